@@ -0,0 +1,108 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.garret.perst.NullFile;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Creates the dbs-files used by the benchmarks.
+ */
+final class BenchmarkStores {
+
+	private static final String PERST_ENCODING = "perst.string.encoding";
+	private static final String PERST_OBJECT_CACHE_SIZE = "perst.object.cache.init.size";
+
+	private BenchmarkStores() {
+	}
+
+	static Storage open(Path file, long pagePoolSize, int objectCacheSize) {
+		Storage storage = StorageFactory.getInstance().createStorage();
+		storage.setProperty(PERST_ENCODING, StandardCharsets.UTF_8.name());
+		storage.setProperty(PERST_OBJECT_CACHE_SIZE, objectCacheSize);
+		storage.open(file.toString(), pagePoolSize);
+		return storage;
+	}
+
+	/**
+	 * Storage that keeps everything in memory, so writing to it measures the copy
+	 * and not the disk.
+	 */
+	static Storage openInMemory() {
+		Storage storage = StorageFactory.getInstance().createStorage();
+		storage.setProperty(PERST_ENCODING, StandardCharsets.UTF_8.name());
+		storage.open(new NullFile(), Storage.INFINITE_PAGE_POOL);
+		return storage;
+	}
+
+	static MessageContentStorageRoot getContentRoot(Storage storage) {
+		MessageContentStorageRoot root = (MessageContentStorageRoot) storage.getRoot();
+		if (root == null) {
+			root = new MessageContentStorageRoot(storage);
+			storage.setRoot(root);
+			storage.commit();
+		}
+		return root;
+	}
+
+	static PerstString putMessage(Storage storage, MessageContentStorageRoot root, int oid, int contentSize,
+			int attachmentCount) {
+		PerstString content = new PerstString(text(contentSize));
+		root.getContentByMsgOid().put(oid, content);
+		root.getPublickeyByMsgOid().put(oid, new PerstString(text(400)));
+		root.getSignatureByMsgOid().put(oid, new PerstString(text(200)));
+		root.getAttachmentsByMsgOid().put(oid, new PerstAttachments(storage, boardAttachments(attachmentCount),
+				fileAttachments(attachmentCount)));
+		return content;
+	}
+
+	static List<PerstBoardAttachment> boardAttachments(int count) {
+		List<PerstBoardAttachment> attachments = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			attachments.add(new PerstBoardAttachment("board-" + i, "SSK@" + text(43), null, text(80)));
+		}
+		return attachments;
+	}
+
+	static List<PerstFileAttachment> fileAttachments(int count) {
+		List<PerstFileAttachment> attachments = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			attachments.add(new PerstFileAttachment("file-" + i + ".zip", 1024L * i, "CHK@" + text(90)));
+		}
+		return attachments;
+	}
+
+	static String text(int size) {
+		StringBuilder text = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			text.append((char) ('a' + i % 26));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.garret.perst.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+
+/**
+ * Random lookups in the content index. With a warm page pool all pages are in
+ * memory, with a cold page pool almost every lookup has to read from the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ContentLookupBenchmark {
+
+	private static final int MESSAGE_COUNT = 50000;
+	private static final int CONTENT_SIZE = 512;
+
+	private static final long COLD_PAGE_POOL_SIZE = 16 * 4096;
+	private static final int COLD_OBJECT_CACHE_SIZE = 16;
+
+	@Param({ "warm", "cold" })
+	public String pagePool;
+
+	private Path file;
+	private Storage storage;
+	private MessageContentReader reader;
+	private SplittableRandom random;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Files.createTempFile("frost-repair-lookup", ".dbs");
+		Files.delete(file);
+		Storage writeStorage = BenchmarkStores.open(file, Storage.DEFAULT_PAGE_POOL_SIZE, 1319);
+		MessageContentStorageRoot root = BenchmarkStores.getContentRoot(writeStorage);
+		for (int oid = 1; oid <= MESSAGE_COUNT; oid++) {
+			BenchmarkStores.putMessage(writeStorage, root, oid, CONTENT_SIZE, 0);
+			if (oid % 10000 == 0) {
+				writeStorage.commit();
+			}
+		}
+		writeStorage.close();
+
+		if (pagePool.equals("warm")) {
+			storage = BenchmarkStores.open(file, Storage.INFINITE_PAGE_POOL, MESSAGE_COUNT);
+		} else {
+			storage = BenchmarkStores.open(file, COLD_PAGE_POOL_SIZE, COLD_OBJECT_CACHE_SIZE);
+		}
+		reader = new MessageContentReader(BenchmarkStores.getContentRoot(storage));
+		if (pagePool.equals("warm")) {
+			for (int oid = 1; oid <= MESSAGE_COUNT; oid++) {
+				reader.readContent(oid);
+			}
+		}
+		random = new SplittableRandom(42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		storage.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public PerstString lookupContent() {
+		return reader.readContent(random.nextInt(MESSAGE_COUNT) + 1);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Random;
+
+/**
+ * Distribution of the content size of generated messages in characters.
+ * <ul>
+ * <li>fixed:N - all messages have N characters</li>
+ * <li>uniform:MIN:MAX - between MIN and MAX characters</li>
+ * <li>lognormal:MEDIAN:SIGMA - most messages are short, a few are very
+ * long</li>
+ * </ul>
+ */
+public class ContentSizes {
+
+	private static final Integer MAX_SIZE = 1024 * 1024;
+
+	private final String type;
+	private final Double first;
+	private final Double second;
+
+	private ContentSizes(String type, Double first, Double second) {
+		this.type = type;
+		this.first = first;
+		this.second = second;
+	}
+
+	public static ContentSizes parse(String value) {
+		String[] parts = value.split(":");
+		try {
+			if (parts[0].equals("fixed") && parts.length == 2) {
+				return new ContentSizes(parts[0], Double.valueOf(parts[1]), null);
+			} else if ((parts[0].equals("uniform") || parts[0].equals("lognormal")) && parts.length == 3) {
+				return new ContentSizes(parts[0], Double.valueOf(parts[1]), Double.valueOf(parts[2]));
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid content size \"%s\"!", value), e);
+		}
+		throw new IllegalArgumentException(String.format("Invalid content size \"%s\"!", value));
+	}
+
+	public Integer next(Random random) {
+		double size;
+		if (type.equals("fixed")) {
+			size = first;
+		} else if (type.equals("uniform")) {
+			size = first + random.nextDouble() * (second - first);
+		} else {
+			size = first * Math.exp(second * random.nextGaussian());
+		}
+		return (int) Math.max(1, Math.min(MAX_SIZE, Math.round(size)));
+	}
+
+	@Override
+	public String toString() {
+		if (second == null) {
+			return String.format("%s:%.0f", type, first);
+		}
+		return String.format("%s:%.0f:%s", type, first, second);
+	}
+}
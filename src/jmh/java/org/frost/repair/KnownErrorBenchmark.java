@@ -0,0 +1,104 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+
+/**
+ * Cost of a broken message: Perst throws an exception, which is caught and
+ * checked by MessageContentReader.isKnownError(...).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class KnownErrorBenchmark {
+
+	private static final int VALID_OID = 1;
+	private static final int DELETED_OID = 2;
+
+	private Path file;
+	private Storage storage;
+	private MessageContentReader reader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Files.createTempFile("frost-repair-error", ".dbs");
+		Files.delete(file);
+		storage = BenchmarkStores.open(file, Storage.INFINITE_PAGE_POOL, 1319);
+		MessageContentStorageRoot root = BenchmarkStores.getContentRoot(storage);
+		BenchmarkStores.putMessage(storage, root, VALID_OID, 1024, 0);
+
+		// Dangling reference: the index still points to the deleted content
+		PerstString deleted = BenchmarkStores.putMessage(storage, root, DELETED_OID, 1024, 0);
+		storage.commit();
+		deleted.deallocate();
+		storage.commit();
+
+		reader = new MessageContentReader(root);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		storage.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public PerstString validLookup() {
+		return reader.readContent(VALID_OID);
+	}
+
+	@Benchmark
+	public PerstString brokenLookup() {
+		return reader.readContent(DELETED_OID);
+	}
+
+	/**
+	 * Only the exception and the check, without the lookup.
+	 */
+	@Benchmark
+	public Boolean throwAndCheck() {
+		try {
+			throw new StorageError(StorageError.DELETED_OBJECT);
+		} catch (StorageError e) {
+			return MessageContentReader.isKnownError(e);
+		}
+	}
+}
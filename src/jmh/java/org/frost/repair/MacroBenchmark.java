@@ -0,0 +1,220 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the whole repair on a generated store and compares the results with a
+ * baseline. Every store size is measured in its own JVM, because peak RSS and
+ * GC time are counted for the whole process.
+ * <ul>
+ * <li>run PATH MESSAGES RESULT [repair options] - repairs PATH and saves the
+ * measurements in RESULT</li>
+ * <li>compare BASELINE THRESHOLD UPDATE RESULT... - fails if a measurement is
+ * worse than the baseline by more than THRESHOLD (e.g. 0.1 for 10%) and
+ * replaces the baseline if UPDATE is true or the baseline is missing</li>
+ * </ul>
+ */
+public class MacroBenchmark {
+
+	private static final Logger log = LoggerFactory.getLogger(MacroBenchmark.class);
+
+	private static final String MESSAGES_PER_SECOND = "messagesPerSecond";
+	private static final String BYTES_READ = "bytesRead";
+	private static final String BYTES_WRITTEN = "bytesWritten";
+	private static final String PEAK_RSS = "peakRss";
+	private static final String GC_MILLIS = "gcMillis";
+	private static final String OUTPUT_SIZE = "outputSize";
+
+	private static final String STORE_PATH = "store";
+	private static final String NEW_MESSAGE_CONTENT_FILE = "messagesContents.dbs.repaired";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 4 && args[0].equals("run")) {
+			List<String> repairArgs = new ArrayList<>();
+			repairArgs.add(args[1]);
+			for (int i = 4; i < args.length; i++) {
+				repairArgs.add(args[i]);
+			}
+			run(RepairOptions.parse(repairArgs.toArray(new String[0])), Long.valueOf(args[2]), Paths.get(args[3]));
+		} else if (args.length >= 4 && args[0].equals("compare")) {
+			List<Path> results = new ArrayList<>();
+			for (int i = 4; i < args.length; i++) {
+				results.add(Paths.get(args[i]));
+			}
+			if (!compare(Paths.get(args[1]), Double.valueOf(args[2]), Boolean.valueOf(args[3]), results)) {
+				System.exit(1);
+			}
+		} else {
+			System.out.println("Usage: run PATH MESSAGES RESULT [options]");
+			System.out.println("       compare BASELINE THRESHOLD UPDATE RESULT...");
+		}
+	}
+
+	private static void run(RepairOptions options, Long messages, Path resultFile) throws IOException {
+		Files.createDirectories(Paths.get(System.getProperty("java.io.tmpdir")));
+		Path newFile = Paths.get(options.getFrostPath(), STORE_PATH, NEW_MESSAGE_CONTENT_FILE);
+		Files.deleteIfExists(newFile);
+
+		Properties ioBefore = readProcFile("io");
+		Long gcBefore = getGcMillis();
+		Long start = System.nanoTime();
+
+		new FrostRepair(options).repair(options.getFrostPath());
+
+		Double seconds = (System.nanoTime() - start) / 1e9;
+		Properties ioAfter = readProcFile("io");
+
+		Properties result = new Properties();
+		result.setProperty(MESSAGES_PER_SECOND, String.format("%.0f", messages / seconds));
+		result.setProperty(BYTES_READ, String.valueOf(getDifference(ioBefore, ioAfter, "rchar")));
+		result.setProperty(BYTES_WRITTEN, String.valueOf(getDifference(ioBefore, ioAfter, "wchar")));
+		result.setProperty(PEAK_RSS, String.valueOf(getKibibytes(readProcFile("status"), "VmHWM") * 1024L));
+		result.setProperty(GC_MILLIS, String.valueOf(getGcMillis() - gcBefore));
+		result.setProperty(OUTPUT_SIZE, String.valueOf(Files.size(newFile)));
+
+		log.info("Repaired {} messages in {} seconds: {}", messages, String.format("%.1f", seconds), result);
+		Files.createDirectories(resultFile.toAbsolutePath().getParent());
+		try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+			result.store(writer, "Repair of " + messages + " messages");
+		}
+	}
+
+	/**
+	 * Reads /proc/self/io or /proc/self/status, so the values are only measured on
+	 * Linux.
+	 */
+	private static Properties readProcFile(String name) throws IOException {
+		Properties result = new Properties();
+		Path file = Paths.get("/proc/self", name);
+		if (!Files.isReadable(file)) {
+			return result;
+		}
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			int separator = line.indexOf(':');
+			if (separator > 0) {
+				result.setProperty(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+			}
+		}
+		return result;
+	}
+
+	private static Long getDifference(Properties before, Properties after, String key) {
+		if (!before.containsKey(key) || !after.containsKey(key)) {
+			return -1L;
+		}
+		return Long.valueOf(after.getProperty(key)) - Long.valueOf(before.getProperty(key));
+	}
+
+	/**
+	 * @param key Value with unit "kB", e.g. "VmHWM: 123456 kB"
+	 */
+	private static Long getKibibytes(Properties status, String key) {
+		String value = status.getProperty(key);
+		if (value == null) {
+			return -1L;
+		}
+		return Long.valueOf(value.split("\\s+")[0]);
+	}
+
+	private static Long getGcMillis() {
+		Long result = 0L;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			result = result + Math.max(0, bean.getCollectionTime());
+		}
+		return result;
+	}
+
+	/**
+	 * Keys of the baseline are the file name of the result without extension and
+	 * the name of the measurement, e.g. "1M.messagesPerSecond".
+	 * 
+	 * @return false if at least one measurement got worse than the threshold
+	 */
+	private static Boolean compare(Path baselineFile, Double threshold, Boolean update, List<Path> resultFiles)
+			throws IOException {
+		Properties baseline = new Properties();
+		Boolean saveBaseline = update;
+		if (Files.exists(baselineFile)) {
+			try (Reader reader = Files.newBufferedReader(baselineFile, StandardCharsets.UTF_8)) {
+				baseline.load(reader);
+			}
+		} else if (!update) {
+			// The baseline depends on the hardware, so the first run records it
+			log.warn("Baseline {} not found, nothing is compared and the results become the baseline",
+					baselineFile);
+			saveBaseline = true;
+		}
+
+		Properties current = new Properties();
+		Boolean passed = true;
+		for (Path resultFile : resultFiles) {
+			String size = resultFile.getFileName().toString().replaceFirst("\\.properties$", "");
+			Properties result = new Properties();
+			try (Reader reader = Files.newBufferedReader(resultFile, StandardCharsets.UTF_8)) {
+				result.load(reader);
+			}
+			for (String name : new TreeSet<>(result.stringPropertyNames())) {
+				String key = size + "." + name;
+				current.setProperty(key, result.getProperty(name));
+				if (!baseline.containsKey(key)) {
+					continue;
+				}
+				Double expected = Double.valueOf(baseline.getProperty(key));
+				Double actual = Double.valueOf(result.getProperty(name));
+				Double change = expected == 0 ? 0 : (actual - expected) / expected;
+				// Only the throughput gets better if it increases
+				Double regression = name.equals(MESSAGES_PER_SECOND) ? -change : change;
+				if (expected < 0 || actual < 0) {
+					log.info("{}: not measured", key);
+				} else if (regression > threshold) {
+					log.error("{}: {} instead of {} ({}%)", key, actual.longValue(), expected.longValue(),
+							String.format("%+.1f", change * 100));
+					passed = false;
+				} else {
+					log.info("{}: {} instead of {} ({}%)", key, actual.longValue(), expected.longValue(),
+							String.format("%+.1f", change * 100));
+				}
+			}
+		}
+
+		if (saveBaseline) {
+			try (Writer writer = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+				current.store(writer, "Baseline of the macro benchmark");
+			}
+			log.info("Saved baseline {}", baselineFile);
+			return true;
+		}
+		return passed;
+	}
+}
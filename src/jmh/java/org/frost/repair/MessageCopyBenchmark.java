@@ -0,0 +1,132 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.garret.perst.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Copy of a single message from the old to the new dbs-file, as done for every
+ * message by the repair.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MessageCopyBenchmark {
+
+	private static final int MESSAGE_OID = 1;
+
+	@Param({ "0", "3" })
+	public int attachmentCount;
+
+	private Path file;
+	private Storage source;
+	private Storage target;
+
+	private MessageContentReader reader;
+	private MessageContentWriter writer;
+	private int nextOid = 1;
+
+	private PerstString content;
+	private List<PerstBoardAttachment> boardAttachments;
+	private List<PerstFileAttachment> fileAttachments;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Files.createTempFile("frost-repair-copy", ".dbs");
+		Files.delete(file);
+		source = BenchmarkStores.open(file, Storage.INFINITE_PAGE_POOL, 1319);
+		MessageContentStorageRoot sourceRoot = BenchmarkStores.getContentRoot(source);
+		BenchmarkStores.putMessage(source, sourceRoot, MESSAGE_OID, 2048, attachmentCount);
+		source.commit();
+		reader = new MessageContentReader(sourceRoot);
+
+		content = sourceRoot.getContentByMsgOid().get(MESSAGE_OID);
+		boardAttachments = BenchmarkStores.boardAttachments(attachmentCount);
+		fileAttachments = BenchmarkStores.fileAttachments(attachmentCount);
+	}
+
+	/**
+	 * The in-memory target keeps every copied message, so it starts empty for
+	 * every iteration instead of growing over the whole trial.
+	 */
+	@Setup(Level.Iteration)
+	public void setUpTarget() {
+		target = BenchmarkStores.openInMemory();
+		CommitScheduler commitScheduler = new CommitScheduler(target, 64L * 1024L * 1024L, 100000L, 60L);
+		writer = new MessageContentWriter(target, BenchmarkStores.getContentRoot(target), commitScheduler);
+		nextOid = 1;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownTarget() {
+		target.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		source.close();
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Lookup of all parts and store under a new OID, like
+	 * BoardReader.repairMessagesFromList(...) does.
+	 */
+	@Benchmark
+	public void copyMessage() {
+		RepairedMessage message = reader.read(MESSAGE_OID);
+		writer.write(new RepairedMessage(nextOid++, message.getContent(), message.getPublicKey(),
+				message.getSignature(), message.getBoardAttachments(), message.getFileAttachments()));
+	}
+
+	@Benchmark
+	public PerstString copyString() {
+		return new PerstString(content);
+	}
+
+	@Benchmark
+	public PerstAttachments copyAttachments() {
+		return new PerstAttachments(target, boardAttachments, fileAttachments);
+	}
+}
@@ -0,0 +1,474 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.garret.perst.Persistent;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.MessageStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+import frost.storage.perst.messages.PerstFrostBoardObject;
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Generates messages.dbs and messagesContents.dbs with synthetic messages in
+ * the same structure as Frost, so the repair can be measured without the
+ * dbs-files of a real user.
+ */
+public class StoreGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(StoreGenerator.class);
+
+	private static final String STORE_PATH = "store";
+
+	private static final String MESSAGE_FILE = "messages.dbs";
+	private static final String MESSAGE_CONTENT_FILE = "messagesContents.dbs";
+
+	private static final String PERST_ENCODING = "perst.string.encoding";
+
+	private static final Integer COMMIT_INTERVAL = 10000;
+
+	private static final Double INVALID_RATIO = 0.02;
+	private static final Double SENT_RATIO = 0.01;
+	private static final Double UNREAD_RATIO = 0.3;
+	private static final Double FLAGGED_RATIO = 0.02;
+	private static final Double STARRED_RATIO = 0.02;
+	private static final Double SIGNED_RATIO = 0.7;
+
+	private static final Integer TEXT_SIZE = 1024 * 1024;
+
+	// Content of messages with a truncated page starts with this marker. Generated
+	// text only contains lowercase letters and spaces, so it is never found
+	// anywhere else.
+	private static final String TRUNCATED_MARKER = "#TRUNCATED#";
+
+	// Perst stores the object header (size and class) and the length of the
+	// string in front of the value of a PerstString
+	private static final Integer OBJECT_PREFIX = 12;
+	private static final Integer PAGE_SIZE = 4096;
+
+	/**
+	 * Damage that is done to a part of a message in messagesContents.dbs.
+	 */
+	public enum Corruption {
+		/**
+		 * The index still points to the OID, but it was reused for an object of
+		 * another class.
+		 */
+		DANGLING,
+
+		/**
+		 * The index still points to a deleted object.
+		 */
+		DELETED,
+
+		/**
+		 * The page of the content was only written partly, the rest of the page
+		 * contains zeros.
+		 */
+		TRUNCATED
+	}
+
+	private Integer boards = 10;
+	private Integer messagesPerBoard = 1000;
+	private ContentSizes contentSizes = ContentSizes.parse("lognormal:1500:1.0");
+	private Double attachmentRatio = 0.05;
+	private Double corruptionRate = 0.0;
+	private Set<Corruption> corruptions = EnumSet.allOf(Corruption.class);
+	private Long seed = 1L;
+
+	private Random random;
+	private String text;
+
+	private final OidSet deletedOids = new OidSet();
+	private final Map<Corruption, Integer> corruptionCounts = new EnumMap<>(Corruption.class);
+
+	public static void main(String[] args) throws IOException {
+		StoreGenerator generator = new StoreGenerator();
+		String path;
+		try {
+			path = generator.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		generator.generate(path);
+	}
+
+	/**
+	 * @return Path for the generated store
+	 */
+	public String parse(String[] args) {
+		String path = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--boards")) {
+				boards = Integer.valueOf(nextValue(args, ++i, arg));
+			} else if (arg.equals("--messages")) {
+				messagesPerBoard = Integer.valueOf(nextValue(args, ++i, arg));
+			} else if (arg.equals("--content-size")) {
+				contentSizes = ContentSizes.parse(nextValue(args, ++i, arg));
+			} else if (arg.equals("--attachment-ratio")) {
+				attachmentRatio = parseRatio(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--corruption-rate")) {
+				corruptionRate = parseRatio(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--corruption")) {
+				corruptions = EnumSet.noneOf(Corruption.class);
+				for (String name : nextValue(args, ++i, arg).split(",")) {
+					corruptions.add(Corruption.valueOf(name.toUpperCase()));
+				}
+			} else if (arg.equals("--seed")) {
+				seed = Long.valueOf(nextValue(args, ++i, arg));
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException(String.format("Unknown option \"%s\"!", arg));
+			} else if (path == null) {
+				path = arg;
+			} else {
+				throw new IllegalArgumentException(String.format("Unexpected parameter \"%s\"!", arg));
+			}
+		}
+		if (path == null) {
+			throw new IllegalArgumentException("Parameter 1 \"path of the generated store\" is missing!");
+		}
+		return path;
+	}
+
+	private static String nextValue(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(String.format("Option \"%s\" requires a value!", option));
+		}
+		return args[index];
+	}
+
+	private static Double parseRatio(String option, String value) {
+		Double result = Double.valueOf(value);
+		if (result < 0 || result > 1) {
+			throw new IllegalArgumentException(String.format("Option \"%s\" must be between 0 and 1!", option));
+		}
+		return result;
+	}
+
+	public void setBoards(Integer boards) {
+		this.boards = boards;
+	}
+
+	public void setMessagesPerBoard(Integer messagesPerBoard) {
+		this.messagesPerBoard = messagesPerBoard;
+	}
+
+	public void setContentSizes(ContentSizes contentSizes) {
+		this.contentSizes = contentSizes;
+	}
+
+	/**
+	 * Share of messages with board and file attachments.
+	 */
+	public void setAttachmentRatio(Double attachmentRatio) {
+		this.attachmentRatio = attachmentRatio;
+	}
+
+	/**
+	 * Share of messages that are damaged by one of the corruptions.
+	 */
+	public void setCorruptionRate(Double corruptionRate) {
+		this.corruptionRate = corruptionRate;
+	}
+
+	public void setCorruptions(Set<Corruption> corruptions) {
+		this.corruptions = corruptions;
+	}
+
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Creates the folder "store" in the given path with the generated dbs-files.
+	 * Existing dbs-files are replaced.
+	 */
+	public void generate(String path) throws IOException {
+		Path storePath = Paths.get(path, STORE_PATH);
+		Files.createDirectories(storePath);
+		Path messageFile = storePath.resolve(MESSAGE_FILE);
+		Path messageContentFile = storePath.resolve(MESSAGE_CONTENT_FILE);
+		Files.deleteIfExists(messageFile);
+		Files.deleteIfExists(messageContentFile);
+
+		log.info("Generate {} boards with {} messages each in {} (content size {}, attachments {}, corruption {} {})",
+				boards, messagesPerBoard, storePath, contentSizes, attachmentRatio, corruptionRate, corruptions);
+
+		random = new Random(seed);
+		text = createText();
+		for (Corruption corruption : Corruption.values()) {
+			corruptionCounts.put(corruption, 0);
+		}
+
+		Storage dbMessages = openStorage(messageFile);
+		MessageStorageRoot rootMessages = new MessageStorageRoot(dbMessages);
+		dbMessages.setRoot(rootMessages);
+
+		Storage dbMessageContents = openStorage(messageContentFile);
+		MessageContentStorageRoot rootMessageContents = new MessageContentStorageRoot(dbMessageContents);
+		dbMessageContents.setRoot(rootMessageContents);
+
+		Long messageCount = 0L;
+		for (int boardId = 1; boardId <= boards; boardId++) {
+			PerstFrostBoardObject board = new PerstFrostBoardObject(dbMessages, String.format("board-%05d", boardId),
+					boardId);
+			rootMessages.getBoardsByName().put(board.getBoardName(), board);
+			rootMessages.getBoardsById().put(boardId, board);
+
+			long dateAndTime = System.currentTimeMillis() - messagesPerBoard * 60000L;
+			for (int msgIndex = 0; msgIndex < messagesPerBoard; msgIndex++) {
+				dateAndTime = dateAndTime + 1 + random.nextInt(120000);
+				generateMessage(dbMessageContents, rootMessageContents, board, dateAndTime, msgIndex);
+
+				messageCount = messageCount + 1;
+				if (messageCount % COMMIT_INTERVAL == 0) {
+					dbMessages.commit();
+					dbMessageContents.commit();
+				}
+			}
+			log.debug("Generated board {}", board.getBoardName());
+		}
+
+		// Deleted at the end, so their OIDs are not reused
+		for (int oid : deletedOids.toArray()) {
+			dbMessageContents.deallocateObject(dbMessageContents.getObjectByOID(oid));
+		}
+
+		dbMessages.commit();
+		dbMessages.close();
+		dbMessageContents.commit();
+		dbMessageContents.close();
+
+		if (corruptionCounts.get(Corruption.TRUNCATED) > 0) {
+			Integer truncatedPages = truncatePages(messageContentFile);
+			log.info("Truncated {} pages", truncatedPages);
+		}
+
+		log.info("Generated {} messages, corrupted {}: {} = {} bytes, {} = {} bytes", messageCount,
+				corruptionCounts, MESSAGE_FILE, Files.size(messageFile), MESSAGE_CONTENT_FILE,
+				Files.size(messageContentFile));
+	}
+
+	private Storage openStorage(Path filename) {
+		Storage storage = StorageFactory.getInstance().createStorage();
+		storage.setProperty(PERST_ENCODING, StandardCharsets.UTF_8.name());
+		storage.open(filename.toString(), Storage.DEFAULT_PAGE_POOL_SIZE);
+		return storage;
+	}
+
+	/**
+	 * Stores a message like frost.storage.perst.messages.MessageStorage and
+	 * frost.storage.perst.messages.MessageContentStorage of Frost.
+	 */
+	private void generateMessage(Storage storage, MessageContentStorageRoot root, PerstFrostBoardObject board,
+			long dateAndTime, int msgIndex) {
+		Corruption corruption = null;
+		if (!corruptions.isEmpty() && random.nextDouble() < corruptionRate) {
+			List<Corruption> choices = new ArrayList<>(corruptions);
+			corruption = choices.get(random.nextInt(choices.size()));
+			corruptionCounts.merge(corruption, 1, Integer::sum);
+		}
+
+		Boolean invalid = random.nextDouble() < INVALID_RATIO;
+		Boolean signed = random.nextDouble() < SIGNED_RATIO;
+		Boolean hasAttachments = random.nextDouble() < attachmentRatio;
+		Boolean isNew = random.nextDouble() < UNREAD_RATIO;
+		Boolean isFlagged = random.nextDouble() < FLAGGED_RATIO;
+		Boolean isStarred = random.nextDouble() < STARRED_RATIO;
+		String messageId = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+
+		PerstFrostMessageObject message = new PerstFrostMessageObject(messageId, null, dateAndTime, msgIndex,
+				invalid ? "generated" : null, signed ? "sender@" + text(27) : "Anonymous", "subject " + text(40),
+				null, signed ? 2 : 0, false, isNew, false, false, isFlagged, isStarred, hasAttachments,
+				hasAttachments, 0, 0);
+		if (invalid) {
+			board.getInvalidMessagesIndex().put(dateAndTime, message);
+		} else {
+			board.getMessageIndex().put(dateAndTime, message);
+			board.getMessageIdIndex().put(messageId, message);
+			if (isNew) {
+				board.getUnreadMessageIndex().put(dateAndTime, message);
+			}
+			if (isFlagged) {
+				board.getFlaggedMessageIndex().put(dateAndTime, message);
+			}
+			if (isStarred) {
+				board.getStarredMessageIndex().put(dateAndTime, message);
+			}
+			if (random.nextDouble() < SENT_RATIO) {
+				board.getSentMessagesList().add(message);
+			}
+		}
+
+		int oid = message.getOid();
+		String content = text(contentSizes.next(random));
+		if (corruption == Corruption.TRUNCATED) {
+			content = TRUNCATED_MARKER + content;
+		}
+		List<Persistent> parts = new ArrayList<>();
+		PerstString messageContent = new PerstString(content);
+		root.getContentByMsgOid().put(oid, messageContent);
+		parts.add(messageContent);
+		if (signed) {
+			PerstString publicKey = new PerstString(text(400));
+			root.getPublickeyByMsgOid().put(oid, publicKey);
+			parts.add(publicKey);
+			PerstString signature = new PerstString(text(100));
+			root.getSignatureByMsgOid().put(oid, signature);
+			parts.add(signature);
+		}
+		if (hasAttachments) {
+			PerstAttachments attachments = new PerstAttachments(storage, generateBoardAttachments(),
+					generateFileAttachments());
+			root.getAttachmentsByMsgOid().put(oid, attachments);
+			parts.add(attachments);
+		}
+
+		if (corruption == Corruption.DANGLING) {
+			Persistent part = parts.get(random.nextInt(parts.size()));
+			part.deallocate();
+			// The free OID is reused by the next object
+			if (part instanceof PerstString) {
+				storage.makePersistent(new PerstFileAttachment(text(20), 0, null));
+			} else {
+				storage.makePersistent(new PerstString(text(20)));
+			}
+		} else if (corruption == Corruption.DELETED) {
+			deletedOids.add(parts.get(random.nextInt(parts.size())).getOid());
+		}
+	}
+
+	private List<PerstBoardAttachment> generateBoardAttachments() {
+		List<PerstBoardAttachment> attachments = new ArrayList<>();
+		int count = random.nextInt(3);
+		for (int i = 0; i < count; i++) {
+			attachments.add(new PerstBoardAttachment("board " + text(10), "SSK@" + text(43), null, text(60)));
+		}
+		return attachments;
+	}
+
+	private List<PerstFileAttachment> generateFileAttachments() {
+		List<PerstFileAttachment> attachments = new ArrayList<>();
+		int count = 1 + random.nextInt(5);
+		for (int i = 0; i < count; i++) {
+			attachments.add(new PerstFileAttachment(text(20) + ".zip", random.nextInt(100000000),
+					"CHK@" + text(90)));
+		}
+		return attachments;
+	}
+
+	/**
+	 * Random words that are cut into pieces, because creating new random text for
+	 * millions of messages would take longer than storing them.
+	 */
+	private String createText() {
+		StringBuilder result = new StringBuilder(TEXT_SIZE);
+		while (result.length() < TEXT_SIZE) {
+			int wordLength = 1 + random.nextInt(10);
+			for (int i = 0; i < wordLength; i++) {
+				result.append((char) ('a' + random.nextInt(26)));
+			}
+			result.append(' ');
+		}
+		return result.toString();
+	}
+
+	private String text(int size) {
+		StringBuilder result = new StringBuilder(size);
+		while (result.length() < size) {
+			int length = Math.min(size - result.length(), text.length());
+			int start = random.nextInt(text.length() - length + 1);
+			result.append(text, start, start + length);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Overwrites every marked PerstString and the rest of its page with zeros.
+	 * 
+	 * @return Number of truncated pages
+	 */
+	private Integer truncatePages(Path filename) throws IOException {
+		byte[] marker = TRUNCATED_MARKER.getBytes(StandardCharsets.UTF_8);
+		Integer truncatedPages = 0;
+		try (FileChannel channel = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// Blocks overlap by the length of the marker, so a marker on the border
+			// of two blocks is found too
+			ByteBuffer block = ByteBuffer.allocate(256 * PAGE_SIZE + marker.length);
+			long blockPosition = 0;
+			long size = channel.size();
+			while (blockPosition < size) {
+				block.clear();
+				while (block.hasRemaining() && channel.read(block, blockPosition + block.position()) > 0) {
+					// Read until the block is full or the file ends
+				}
+				int length = block.position();
+				long lastTruncated = -1;
+				for (int i = 0; i + marker.length <= length && i < 256 * PAGE_SIZE; i++) {
+					if (!startsWith(block.array(), i, marker)) {
+						continue;
+					}
+					long markerPosition = blockPosition + i;
+					long start = Math.max(0, markerPosition - OBJECT_PREFIX);
+					long end = Math.min(size, (markerPosition / PAGE_SIZE + 1) * PAGE_SIZE);
+					if (start > lastTruncated) {
+						channel.write(ByteBuffer.allocate((int) (end - start)), start);
+						truncatedPages = truncatedPages + 1;
+						lastTruncated = end;
+					}
+				}
+				blockPosition = blockPosition + 256 * PAGE_SIZE;
+			}
+		}
+		return truncatedPages;
+	}
+
+	private static Boolean startsWith(byte[] data, int offset, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (data[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
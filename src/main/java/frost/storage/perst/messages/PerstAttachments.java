@@ -19,6 +19,8 @@
 package frost.storage.perst.messages;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 import org.garret.perst.IPersistentList;
 import org.garret.perst.Persistent;
@@ -34,16 +36,26 @@ public class PerstAttachments extends Persistent {
 	public PerstAttachments() {
 	}
 
-	public PerstAttachments(Storage storage, IPersistentList<PerstBoardAttachment> otherBoardAttachments,
-			IPersistentList<PerstFileAttachment> otherFileAttachments) {
+	public PerstAttachments(Storage storage, List<PerstBoardAttachment> otherBoardAttachments,
+			List<PerstFileAttachment> otherFileAttachments) {
+		this(storage, otherBoardAttachments, otherFileAttachments, UnaryOperator.identity());
+	}
+
+	/**
+	 * @param strings Applied to the strings of the new attachments, e.g. to reuse
+	 *                equal strings
+	 */
+	public PerstAttachments(Storage storage, List<PerstBoardAttachment> otherBoardAttachments,
+			List<PerstFileAttachment> otherFileAttachments, UnaryOperator<String> strings) {
 		if (otherBoardAttachments != null && otherBoardAttachments.size() > 0) {
 			this.boardAttachments = storage.createScalableList();
 			Iterator<PerstBoardAttachment> attachmentIt = otherBoardAttachments.iterator();
 			while (attachmentIt.hasNext()) {
 				PerstBoardAttachment currentAttachment = attachmentIt.next();
-				PerstBoardAttachment newtAttachment = new PerstBoardAttachment(currentAttachment.getName(),
-						currentAttachment.getPubKey(), currentAttachment.getPrivKey(),
-						currentAttachment.getDescription());
+				PerstBoardAttachment newtAttachment = new PerstBoardAttachment(
+						strings.apply(currentAttachment.getName()), strings.apply(currentAttachment.getPubKey()),
+						strings.apply(currentAttachment.getPrivKey()),
+						strings.apply(currentAttachment.getDescription()));
 				boardAttachments.add(newtAttachment);
 			}
 		}
@@ -52,8 +64,9 @@ public class PerstAttachments extends Persistent {
 			Iterator<PerstFileAttachment> attachmentIt = otherFileAttachments.iterator();
 			while (attachmentIt.hasNext()) {
 				PerstFileAttachment currentAttachment = attachmentIt.next();
-				PerstFileAttachment newtAttachment = new PerstFileAttachment(currentAttachment.getName(),
-						currentAttachment.getSize(), currentAttachment.getCHKKey());
+				PerstFileAttachment newtAttachment = new PerstFileAttachment(
+						strings.apply(currentAttachment.getName()), currentAttachment.getSize(),
+						strings.apply(currentAttachment.getCHKKey()));
 				fileAttachments.add(newtAttachment);
 			}
 		}
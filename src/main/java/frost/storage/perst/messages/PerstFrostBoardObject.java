@@ -122,6 +122,25 @@ public class PerstFrostBoardObject extends Persistent {
 		return sentMessagesList;
 	}
 
+	/**
+	 * Replaces the indexes of all received and sent messages, e.g. after they were
+	 * rebuilt. The old indexes are not deallocated.
+	 */
+	public void setMessageIndexes(Index<PerstFrostMessageObject> messageIndex,
+			Index<PerstFrostMessageObject> messageIdIndex, Index<PerstFrostMessageObject> unreadMessageIndex,
+			Index<PerstFrostMessageObject> flaggedMessageIndex, Index<PerstFrostMessageObject> starredMessageIndex,
+			Index<PerstFrostMessageObject> invalidMessagesIndex,
+			IPersistentList<PerstFrostMessageObject> sentMessagesList) {
+		this.messageIndex = messageIndex;
+		this.messageIdIndex = messageIdIndex;
+		this.unreadMessageIndex = unreadMessageIndex;
+		this.flaggedMessageIndex = flaggedMessageIndex;
+		this.starredMessageIndex = starredMessageIndex;
+		this.invalidMessagesIndex = invalidMessagesIndex;
+		this.sentMessagesList = sentMessagesList;
+		modify();
+	}
+
 	public IPersistentList<PerstFrostUnsentMessageObject> getUnsentMessagesList() {
 		return unsentMessagesList;
 	}
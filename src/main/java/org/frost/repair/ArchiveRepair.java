@@ -0,0 +1,166 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Index;
+import org.garret.perst.Link;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messagearchive.ArchiveMessageStorageRoot;
+import frost.storage.perst.messagearchive.PerstFrostArchiveBoardAttachment;
+import frost.storage.perst.messagearchive.PerstFrostArchiveBoardObject;
+import frost.storage.perst.messagearchive.PerstFrostArchiveFileAttachment;
+import frost.storage.perst.messagearchive.PerstFrostArchiveMessageObject;
+
+/**
+ * Copies all readable messages of the message archive into a new dbs-file.
+ * Every message is copied on its own and no references are kept, so the memory
+ * needed does not depend on the size of the archive.
+ */
+public class ArchiveRepair {
+
+	private static final Logger log = LoggerFactory.getLogger(ArchiveRepair.class);
+
+	private final Storage storage;
+	private final ArchiveMessageStorageRoot newRoot;
+	private final CommitScheduler commitScheduler;
+
+	public ArchiveRepair(Storage storage, ArchiveMessageStorageRoot newRoot, CommitScheduler commitScheduler) {
+		this.storage = storage;
+		this.newRoot = newRoot;
+		this.commitScheduler = commitScheduler;
+	}
+
+	public void repair(ArchiveMessageStorageRoot oldRoot) {
+		Iterator<PerstFrostArchiveBoardObject> boardIt = oldRoot.getBoardsByName().iterator();
+		while (boardIt.hasNext()) {
+			PerstFrostArchiveBoardObject board = boardIt.next();
+			String boardName = board.getBoardName();
+			log.info("Copy archived messages from board {} ...", boardName);
+
+			PerstFrostArchiveBoardObject newBoard = newRoot.getBoardsByName().get(boardName);
+			if (newBoard == null) {
+				newBoard = new PerstFrostArchiveBoardObject(storage, boardName);
+				newRoot.getBoardsByName().put(boardName, newBoard);
+			}
+
+			Integer messageCount = 0;
+			Integer brokenCount = 0;
+			try {
+				// The entries load their message only on request, so a broken message does not
+				// stop the iteration
+				Iterator<Map.Entry<Object, PerstFrostArchiveMessageObject>> entryIt = board.getMessageIndex()
+						.entryIterator();
+				while (entryIt.hasNext()) {
+					Map.Entry<Object, PerstFrostArchiveMessageObject> entry = entryIt.next();
+					try {
+						copyMessage(entry.getValue(), newBoard);
+						messageCount = messageCount + 1;
+					} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException
+							| StorageError e) {
+						if (MessageContentReader.isKnownError(e)) {
+							brokenCount = brokenCount + 1;
+						} else {
+							throw e;
+						}
+					}
+				}
+			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+				if (MessageContentReader.isKnownError(e)) {
+					log.warn("Message index of board {} is broken after {} messages", boardName, messageCount);
+				} else {
+					throw e;
+				}
+			}
+			log.info("Copied {} archived messages from board {}, removed {} broken messages", messageCount,
+					boardName, brokenCount);
+		}
+	}
+
+	private void copyMessage(PerstFrostArchiveMessageObject message, PerstFrostArchiveBoardObject newBoard) {
+		int oid = message.getOid();
+		PerstFrostArchiveMessageObject newMessage = new PerstFrostArchiveMessageObject(storage,
+				message.getMessageId(), message.getInReplyTo(), message.getDateAndTime(), message.getMsgIndex(),
+				message.getFromName(), message.getSubject(), message.getRecipientName(),
+				message.getSignatureStatus(), message.isReplied(), message.isFlagged(), message.isStarred(),
+				message.getIdLinePos(), message.getIdLineLen(), message.getContent(), message.getPublicKey());
+		long objects = 1;
+
+		List<PerstFrostArchiveBoardAttachment> boardAttachments = readAll(message.getBoardAttachments(), oid,
+				"board attachments of archived message");
+		for (PerstFrostArchiveBoardAttachment attachment : boardAttachments) {
+			newMessage.getBoardAttachments().add(new PerstFrostArchiveBoardAttachment(attachment.getName(),
+					attachment.getPubKey(), attachment.getPrivKey(), attachment.getDescription()));
+		}
+		List<PerstFrostArchiveFileAttachment> fileAttachments = readAll(message.getFileAttachments(), oid,
+				"file attachments of archived message");
+		for (PerstFrostArchiveFileAttachment attachment : fileAttachments) {
+			newMessage.getFileAttachments().add(new PerstFrostArchiveFileAttachment(attachment.getName(),
+					attachment.getSize(), attachment.getCHKKey()));
+		}
+		objects = objects + boardAttachments.size() + fileAttachments.size();
+
+		Index<PerstFrostArchiveMessageObject> messageIndex = newBoard.getMessageIndex();
+		messageIndex.put(newMessage.getDateAndTime(), newMessage);
+		if (newMessage.getMessageId() != null) {
+			newBoard.getMessageIdIndex().put(newMessage.getMessageId(), newMessage);
+		}
+
+		long bytes = length(newMessage.getContent()) + length(newMessage.getPublicKey())
+				+ length(newMessage.getSubject());
+		commitScheduler.written(bytes, objects);
+	}
+
+	/**
+	 * @return Readable attachments, empty if any of them is broken
+	 */
+	private <T> List<T> readAll(Link<T> link, int oid, String part) {
+		List<T> result = new ArrayList<>();
+		if (link == null) {
+			return result;
+		}
+		try {
+			for (int i = 0; i < link.size(); i++) {
+				T element = link.get(i);
+				if (element != null) {
+					result.add(element);
+				}
+			}
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				log.warn("Remove broken {} (OID = {})", part, oid);
+				result.clear();
+			} else {
+				throw e;
+			}
+		}
+		return result;
+	}
+
+	private long length(String value) {
+		return value != null ? value.length() : 0;
+	}
+}
@@ -0,0 +1,236 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.garret.perst.Index;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.PerstFrostBoardObject;
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Reads the content of all messages of a board.
+ */
+public class BoardReader {
+
+	private static final Logger log = LoggerFactory.getLogger(BoardReader.class);
+
+	private final MessageContentReader reader;
+
+	private final OidSet copiedOids = new OidSet();
+
+	private Checkpoint position;
+	private Checkpoint resumeFrom;
+	private HighWaterMarks highWaterMarks;
+	private Boolean onlyNewMessages = false;
+	private Boolean reportBroken = true;
+	private KeyScanner keyScanner;
+	private Boolean exportOnly = false;
+
+	private RepairMetrics metrics = new RepairMetrics();
+
+	public BoardReader(MessageContentReader reader) {
+		this.reader = reader;
+	}
+
+	public void setMetrics(RepairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Keeps the position of the last message passed to the sink up to date. Only
+	 * useful if all boards are read one after another.
+	 */
+	public void trackPosition(Checkpoint position) {
+		this.position = position;
+	}
+
+	/**
+	 * Reads only the messages of the indexes that are newer than the marks and
+	 * updates the marks.
+	 */
+	public void readNewMessages(HighWaterMarks highWaterMarks) {
+		this.highWaterMarks = highWaterMarks;
+		this.onlyNewMessages = true;
+	}
+
+	/**
+	 * Reads all messages, but updates the marks, so the next incremental repair
+	 * can start from them.
+	 */
+	public void recordHighWaterMarks(HighWaterMarks highWaterMarks) {
+		this.highWaterMarks = highWaterMarks;
+		this.onlyNewMessages = false;
+	}
+
+	/**
+	 * False only counts the broken parts in the statistics, e.g. for a check.
+	 */
+	public void setReportBroken(Boolean reportBroken) {
+		this.reportBroken = reportBroken;
+	}
+
+	/**
+	 * Searches the content of every message for Freenet keys while it is read.
+	 */
+	public void setKeyScanner(KeyScanner keyScanner) {
+		this.keyScanner = keyScanner;
+	}
+
+	/**
+	 * True reads only the attachments and, with a key scanner, the content of the
+	 * messages, e.g. for an export. The messages can't be stored then.
+	 */
+	public void setExportOnly(Boolean exportOnly) {
+		this.exportOnly = exportOnly;
+	}
+
+	/**
+	 * Skips all messages up to and including the position of the checkpoint.
+	 */
+	public void resumeFrom(Checkpoint checkpoint) {
+		this.resumeFrom = checkpoint;
+	}
+
+	public BoardStatistics readBoard(PerstFrostBoardObject board, MessageSink sink) throws IOException {
+		// @see frost.storage.perst.messages.MessageStorage.insertMessage(...)
+		// getMessageIndex() = All valid messages
+		// getUnreadMessageIndex() = Subset of getMessageIndex()
+		// getFlaggedMessageIndex() = Subset of getMessageIndex()
+		// getStarredMessageIndex() = Subset of getMessageIndex()
+		// getMessageIdIndex() = Subset of getMessageIndex()
+		// getInvalidMessagesIndex() = All invalid messages, never shown in GUI
+		// getSentMessagesList() = All sent messages, OID differs
+
+		BoardStatistics statistics = new BoardStatistics(board.getBoardName());
+		LatencyHistogram latency = metrics.getBoardLatency(board.getBoardName());
+
+		Integer messageCount = repairMessagesFromList(Checkpoint.MESSAGE_INDEX,
+				getMessages(board, Checkpoint.MESSAGE_INDEX, board.getMessageIndex()), sink, statistics, latency);
+		log.debug("{}: getMessageIndex = {}", board.getBoardName(), messageCount);
+
+		messageCount = repairMessagesFromList(Checkpoint.INVALID_MESSAGES_INDEX,
+				getMessages(board, Checkpoint.INVALID_MESSAGES_INDEX, board.getInvalidMessagesIndex()), sink,
+				statistics, latency);
+		log.debug("{}: getInvalidMessagesIndex = {}", board.getBoardName(), messageCount);
+
+		messageCount = repairMessagesFromList(Checkpoint.SENT_MESSAGES_LIST, board.getSentMessagesList().iterator(),
+				sink, statistics, latency);
+		log.debug("{}: getSentMessagesList = {}", board.getBoardName(), messageCount);
+
+		// @see frost.storage.perst.messages.PerstFrostUnsentMessageObject
+		// getUnsentMessagesList() = All unsent messages, stored in MESSAGE_FILE
+		// getDraftMessagesList() = Not used in Frost, stored in MESSAGE_FILE
+
+		return statistics;
+	}
+
+	/**
+	 * The sent messages have no date index and are always read completely.
+	 */
+	private Iterator<PerstFrostMessageObject> getMessages(PerstFrostBoardObject board, String listName,
+			Index<PerstFrostMessageObject> index) {
+		if (!onlyNewMessages) {
+			return index.iterator();
+		}
+		return highWaterMarks.newMessages(board.getBoardName(), listName, index).iterator();
+	}
+
+	private Integer repairMessagesFromList(String listName, Iterator<PerstFrostMessageObject> messageIt,
+			MessageSink sink, BoardStatistics statistics, LatencyHistogram latency) throws IOException {
+		long listStart = System.nanoTime();
+		String boardName = statistics.getBoardName();
+		Integer messageCount = 0;
+		if (resumeFrom != null && !skipToCheckpoint(boardName, listName, messageIt)) {
+			return messageCount;
+		}
+		while (messageIt.hasNext()) {
+			PerstFrostMessageObject message = messageIt.next();
+			int oid = message.getOid();
+			messageCount = messageCount + 1;
+			if (highWaterMarks != null && !listName.equals(Checkpoint.SENT_MESSAGES_LIST)) {
+				highWaterMarks.update(boardName, listName, message.getDateAndTime());
+			}
+
+			// The same message may be in several lists, e.g. an invalid message that was
+			// sent. The new indexes are unique, so only the first one is stored.
+			if (!copiedOids.add(oid)) {
+				statistics.addDuplicate();
+				metrics.add(RepairMetrics.DUPLICATES, 1);
+				continue;
+			}
+			statistics.addMessage();
+			if (position != null) {
+				position.set(boardName, listName, oid);
+			}
+			long start = System.nanoTime();
+			RepairedMessage repairedMessage = exportOnly ? reader.readForExport(oid, keyScanner != null)
+					: reader.read(oid);
+			repairedMessage.setOrigin(boardName, message.getDateAndTime());
+			if (keyScanner != null) {
+				PerstString content = repairedMessage.getContent();
+				List<String> keys = keyScanner.scan(content != null ? content.getValue() : null);
+				repairedMessage.setContentKeys(keys);
+				metrics.add(RepairMetrics.CONTENT_KEYS, keys.size());
+			}
+			if (repairedMessage.isBroken()) {
+				statistics.addBroken(repairedMessage.getBrokenParts());
+				if (reportBroken) {
+					reader.reportBroken(boardName, listName, oid, repairedMessage.getBrokenParts());
+				}
+			}
+			sink.accept(repairedMessage);
+			latency.recordSince(start);
+		}
+		metrics.list(listName, listStart);
+		return messageCount;
+	}
+
+	/**
+	 * Skips the messages that were committed before the checkpoint. Boards are
+	 * read in the order of their name and the lists of a board always in the same
+	 * order.
+	 * 
+	 * @return false if the whole list was already committed
+	 */
+	private Boolean skipToCheckpoint(String boardName, String listName, Iterator<PerstFrostMessageObject> messageIt) {
+		Integer boardOrder = boardName.compareTo(resumeFrom.getBoardName());
+		Integer listOrder = Checkpoint.getListOrder(listName) - Checkpoint.getListOrder(resumeFrom.getListName());
+		if (boardOrder < 0 || (boardOrder == 0 && listOrder < 0)) {
+			return false;
+		} else if (boardOrder > 0 || listOrder > 0) {
+			log.warn("Checkpoint {} not found, continue with board {}", resumeFrom, boardName);
+			resumeFrom = null;
+			return true;
+		}
+
+		while (messageIt.hasNext()) {
+			if (messageIt.next().getOid() == resumeFrom.getLastOid()) {
+				log.info("Resume after {}", resumeFrom);
+				resumeFrom = null;
+				break;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.List;
+
+/**
+ * Counts of a single board, logged as summary after the board is done.
+ */
+public class BoardStatistics {
+
+	private final String boardName;
+
+	private Integer messageCount = 0;
+	private Integer duplicateCount = 0;
+	private Integer brokenCount = 0;
+	private Integer brokenContentCount = 0;
+	private Integer brokenPublicKeyCount = 0;
+	private Integer brokenSignatureCount = 0;
+	private Integer brokenAttachmentCount = 0;
+
+	public BoardStatistics(String boardName) {
+		this.boardName = boardName;
+	}
+
+	public String getBoardName() {
+		return boardName;
+	}
+
+	public Integer getMessageCount() {
+		return messageCount;
+	}
+
+	public void addMessage() {
+		messageCount = messageCount + 1;
+	}
+
+	/**
+	 * Messages that were skipped, because their OID was already copied.
+	 */
+	public Integer getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	public void addDuplicate() {
+		duplicateCount = duplicateCount + 1;
+	}
+
+	/**
+	 * Messages with at least one broken part.
+	 */
+	public Integer getBrokenCount() {
+		return brokenCount;
+	}
+
+	/**
+	 * Counts a message with broken parts. Broken board and file attachments count
+	 * as broken attachments, but only once per message.
+	 */
+	public void addBroken(List<BrokenPart> brokenParts) {
+		brokenCount = brokenCount + 1;
+		Boolean brokenAttachments = false;
+		for (BrokenPart brokenPart : brokenParts) {
+			String part = brokenPart.getPart();
+			if (part.equals(MessageContentReader.CONTENT)) {
+				brokenContentCount = brokenContentCount + 1;
+			} else if (part.equals(MessageContentReader.PUBLIC_KEY)) {
+				brokenPublicKeyCount = brokenPublicKeyCount + 1;
+			} else if (part.equals(MessageContentReader.SIGNATURE)) {
+				brokenSignatureCount = brokenSignatureCount + 1;
+			} else {
+				brokenAttachments = true;
+			}
+		}
+		if (brokenAttachments) {
+			brokenAttachmentCount = brokenAttachmentCount + 1;
+		}
+	}
+
+	public Integer getBrokenContentCount() {
+		return brokenContentCount;
+	}
+
+	public Integer getBrokenPublicKeyCount() {
+		return brokenPublicKeyCount;
+	}
+
+	public Integer getBrokenSignatureCount() {
+		return brokenSignatureCount;
+	}
+
+	public Integer getBrokenAttachmentCount() {
+		return brokenAttachmentCount;
+	}
+
+	/**
+	 * Adds the counts of another board, e.g. for a total.
+	 */
+	public void add(BoardStatistics other) {
+		messageCount = messageCount + other.messageCount;
+		duplicateCount = duplicateCount + other.duplicateCount;
+		brokenCount = brokenCount + other.brokenCount;
+		brokenContentCount = brokenContentCount + other.brokenContentCount;
+		brokenPublicKeyCount = brokenPublicKeyCount + other.brokenPublicKeyCount;
+		brokenSignatureCount = brokenSignatureCount + other.brokenSignatureCount;
+		brokenAttachmentCount = brokenAttachmentCount + other.brokenAttachmentCount;
+	}
+
+	/**
+	 * Counts without the name of the board.
+	 */
+	public String getCounts() {
+		return String.format(
+				"%d messages, %d duplicates skipped, %d with broken parts "
+						+ "(content %d, public key %d, signature %d, attachments %d)",
+				messageCount, duplicateCount, brokenCount, brokenContentCount, brokenPublicKeyCount,
+				brokenSignatureCount, brokenAttachmentCount);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("board %s: %s", boardName, getCounts());
+	}
+}
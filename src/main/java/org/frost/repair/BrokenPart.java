@@ -0,0 +1,66 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import org.garret.perst.StorageError;
+
+/**
+ * A part of a message that could not be read and the reason.
+ */
+public class BrokenPart {
+
+	private final String part;
+	private final String error;
+	private final Integer errorCode;
+
+	public BrokenPart(String part, String error, Integer errorCode) {
+		this.part = part;
+		this.error = error;
+		this.errorCode = errorCode;
+	}
+
+	public BrokenPart(String part, Throwable e) {
+		this.part = part;
+		this.error = e.getClass().getSimpleName();
+		if (e instanceof StorageError) {
+			this.errorCode = ((StorageError) e).getErrorCode();
+		} else {
+			this.errorCode = null;
+		}
+	}
+
+	/**
+	 * @see MessageContentReader#CONTENT
+	 */
+	public String getPart() {
+		return part;
+	}
+
+	/**
+	 * Class of the exception.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Error code of a StorageError or null.
+	 */
+	public Integer getErrorCode() {
+		return errorCode;
+	}
+}
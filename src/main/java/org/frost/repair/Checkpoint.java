@@ -0,0 +1,129 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Position of the last message that was committed to the new dbs-file. It is
+ * saved next to the new dbs-file after every commit, so an aborted repair can
+ * continue from there.
+ */
+public class Checkpoint {
+
+	public static final String MESSAGE_INDEX = "messageIndex";
+	public static final String INVALID_MESSAGES_INDEX = "invalidMessagesIndex";
+	public static final String SENT_MESSAGES_LIST = "sentMessagesList";
+
+	private static final String BOARD = "board";
+	private static final String LIST = "list";
+	private static final String LAST_OID = "lastOid";
+
+	private String boardName;
+	private String listName;
+	private int lastOid;
+
+	public static Path getPath(Path newFilename) {
+		return Paths.get(newFilename.toString() + ".checkpoint");
+	}
+
+	public static Checkpoint load(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			throw new IOException(String.format("Checkpoint \"%s\" does not exist!", path));
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(path)) {
+			properties.load(in);
+		}
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.boardName = properties.getProperty(BOARD);
+		checkpoint.listName = properties.getProperty(LIST);
+		try {
+			checkpoint.lastOid = Integer.parseInt(properties.getProperty(LAST_OID, ""));
+		} catch (NumberFormatException e) {
+			throw new IOException(String.format("Checkpoint \"%s\" is broken!", path), e);
+		}
+		if (checkpoint.boardName == null || getListOrder(checkpoint.listName) < 0) {
+			throw new IOException(String.format("Checkpoint \"%s\" is broken!", path));
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Replaces the saved checkpoint, so an abort while saving keeps the old one.
+	 */
+	public synchronized void save(Path path) throws IOException {
+		if (boardName == null) {
+			return;
+		}
+		Properties properties = new Properties();
+		properties.setProperty(BOARD, boardName);
+		properties.setProperty(LIST, listName);
+		properties.setProperty(LAST_OID, Integer.toString(lastOid));
+
+		Path temp = Paths.get(path.toString() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			properties.store(out, "Frost-Repair checkpoint");
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public synchronized void set(String boardName, String listName, int lastOid) {
+		this.boardName = boardName;
+		this.listName = listName;
+		this.lastOid = lastOid;
+	}
+
+	public String getBoardName() {
+		return boardName;
+	}
+
+	public String getListName() {
+		return listName;
+	}
+
+	public int getLastOid() {
+		return lastOid;
+	}
+
+	/**
+	 * @return Order in which the lists of a board are repaired or -1 for an unknown
+	 *         list
+	 */
+	public static int getListOrder(String listName) {
+		if (MESSAGE_INDEX.equals(listName)) {
+			return 0;
+		} else if (INVALID_MESSAGES_INDEX.equals(listName)) {
+			return 1;
+		} else if (SENT_MESSAGES_LIST.equals(listName)) {
+			return 2;
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("board %s, %s, OID %d", boardName, listName, lastOid);
+	}
+}
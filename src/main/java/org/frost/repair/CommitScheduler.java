@@ -0,0 +1,114 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.concurrent.TimeUnit;
+
+import org.garret.perst.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides when to commit the new dbs-file. Perst keeps all modified objects
+ * until the next commit, so large messages are committed earlier than small
+ * ones. The duration of all commits is recorded to tune the limits.
+ */
+public class CommitScheduler {
+
+	private static final Logger log = LoggerFactory.getLogger(CommitScheduler.class);
+
+	private final Storage storage;
+
+	private final Long maxDirtyBytes;
+	private final Long maxDirtyObjects;
+	private final Long maxIntervalNanos;
+
+	private long dirtyBytes;
+	private long dirtyObjects;
+	private long lastCommit;
+
+	private Runnable commitListener;
+
+	private RepairMetrics metrics = new RepairMetrics();
+
+	private long commitCount;
+	private long commitNanos;
+	private long maxCommitNanos;
+
+	public CommitScheduler(Storage storage, Long maxDirtyBytes, Long maxDirtyObjects, Long maxIntervalSeconds) {
+		this.storage = storage;
+		this.maxDirtyBytes = maxDirtyBytes;
+		this.maxDirtyObjects = maxDirtyObjects;
+		this.maxIntervalNanos = TimeUnit.SECONDS.toNanos(maxIntervalSeconds);
+		lastCommit = System.nanoTime();
+	}
+
+	/**
+	 * Called after every commit.
+	 */
+	public void setCommitListener(Runnable commitListener) {
+		this.commitListener = commitListener;
+	}
+
+	public void setMetrics(RepairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Records modified objects and commits if one of the limits is reached.
+	 */
+	public void written(long bytes, long objects) {
+		dirtyBytes = dirtyBytes + bytes;
+		dirtyObjects = dirtyObjects + objects;
+		if (dirtyBytes >= maxDirtyBytes || dirtyObjects >= maxDirtyObjects
+				|| System.nanoTime() - lastCommit >= maxIntervalNanos) {
+			commit();
+		}
+	}
+
+	public void commit() {
+		long start = System.nanoTime();
+		storage.commit();
+		long end = System.nanoTime();
+		metrics.time(RepairMetrics.COMMIT, start);
+
+		long duration = end - start;
+		commitCount = commitCount + 1;
+		commitNanos = commitNanos + duration;
+		maxCommitNanos = Math.max(maxCommitNanos, duration);
+		log.debug("Commit of {} objects with {} bytes took {} ms", dirtyObjects, dirtyBytes,
+				TimeUnit.NANOSECONDS.toMillis(duration));
+
+		dirtyBytes = 0;
+		dirtyObjects = 0;
+		lastCommit = end;
+
+		if (commitListener != null) {
+			commitListener.run();
+		}
+	}
+
+	public void logStatistics() {
+		if (commitCount == 0) {
+			return;
+		}
+		log.info("{} commits took {} ms (average {} ms, max {} ms)", commitCount,
+				TimeUnit.NANOSECONDS.toMillis(commitNanos),
+				TimeUnit.NANOSECONDS.toMillis(commitNanos / commitCount),
+				TimeUnit.NANOSECONDS.toMillis(maxCommitNanos));
+	}
+}
@@ -0,0 +1,219 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Set of 64 bit fingerprints of strings, e.g. keys, that does not use the
+ * heap. The fingerprints are stored in an open-addressing hash table with
+ * linear probing in direct buffers. If the table outgrows its memory, it moves
+ * to a memory-mapped temporary file, so the operating system decides what
+ * stays in memory.
+ * <p>
+ * Only the fingerprint is stored, so two different strings with the same
+ * fingerprint count as duplicate. With 64 bits this happens about once in
+ * 300,000 sets of 10 million strings. Only one thread may use a set.
+ */
+public class FingerprintSet implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(FingerprintSet.class);
+
+	private static final Integer INITIAL_CAPACITY = 1 << 16;
+	// Largest segment of the table, 512 MiB
+	private static final Integer SEGMENT_SHIFT = 26;
+	private static final Double MAX_LOAD = 0.5;
+
+	// Marks an empty slot
+	private static final long EMPTY = 0;
+
+	private final Long maxMemory;
+	private final Path overflowDir;
+
+	private LongBuffer[] segments;
+	private long capacity;
+	private long size;
+	private long duplicateCount;
+
+	private Path overflowFile;
+	private FileChannel overflowChannel;
+
+	/**
+	 * @param maxMemory   Size of the table in direct memory in bytes, before it
+	 *                    moves to a file
+	 * @param overflowDir Folder of the file
+	 */
+	public FingerprintSet(Long maxMemory, Path overflowDir) throws IOException {
+		this.maxMemory = maxMemory;
+		this.overflowDir = overflowDir;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @return false if the string or one with the same fingerprint was already
+	 *         added
+	 */
+	public boolean add(String value) throws IOException {
+		long fingerprint = fingerprint(value);
+		if (!insert(fingerprint)) {
+			duplicateCount = duplicateCount + 1;
+			return false;
+		}
+		size = size + 1;
+		if (size > capacity * MAX_LOAD) {
+			grow();
+		}
+		return true;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Number of calls of add(...) for strings that were already in the set.
+	 */
+	public long getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	private boolean insert(long fingerprint) {
+		long mask = capacity - 1;
+		long slot = mix(fingerprint) & mask;
+		while (true) {
+			LongBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+			int index = (int) (slot & ((1 << SEGMENT_SHIFT) - 1));
+			long current = segment.get(index);
+			if (current == EMPTY) {
+				segment.put(index, fingerprint);
+				return true;
+			} else if (current == fingerprint) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void grow() throws IOException {
+		LongBuffer[] oldSegments = segments;
+		FileChannel oldChannel = overflowChannel;
+		Path oldFile = overflowFile;
+		allocate(capacity * 2);
+		for (LongBuffer segment : oldSegments) {
+			for (int i = 0; i < segment.capacity(); i++) {
+				long fingerprint = segment.get(i);
+				if (fingerprint != EMPTY) {
+					insert(fingerprint);
+				}
+			}
+		}
+		// Drop the mapping before the file is deleted
+		oldSegments = null;
+		if (oldChannel != null) {
+			delete(oldChannel, oldFile);
+		}
+	}
+
+	private void allocate(long newCapacity) throws IOException {
+		long bytes = newCapacity * Long.BYTES;
+		int segmentSlots = (int) Math.min(newCapacity, 1L << SEGMENT_SHIFT);
+		int segmentCount = (int) (newCapacity / segmentSlots);
+		LongBuffer[] newSegments = new LongBuffer[segmentCount];
+		if (bytes <= maxMemory) {
+			for (int i = 0; i < segmentCount; i++) {
+				newSegments[i] = ByteBuffer.allocateDirect(segmentSlots * Long.BYTES).order(ByteOrder.nativeOrder())
+						.asLongBuffer();
+			}
+			overflowChannel = null;
+			overflowFile = null;
+		} else {
+			overflowFile = Files.createTempFile(overflowDir, "fingerprints", ".tmp");
+			overflowFile.toFile().deleteOnExit();
+			log.info("Move {} fingerprints to {} ({} MiB)", size, overflowFile, bytes / (1024 * 1024));
+			overflowChannel = FileChannel.open(overflowFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			// A new file reads as zeros, which are empty slots
+			for (int i = 0; i < segmentCount; i++) {
+				newSegments[i] = overflowChannel
+						.map(FileChannel.MapMode.READ_WRITE, (long) i * segmentSlots * Long.BYTES,
+								(long) segmentSlots * Long.BYTES)
+						.order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+		}
+		segments = newSegments;
+		capacity = newCapacity;
+	}
+
+	/**
+	 * FNV-1a over the characters. Never returns EMPTY.
+	 */
+	static long fingerprint(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return hash != EMPTY ? hash : 1;
+	}
+
+	/**
+	 * Spreads the fingerprint over the table. FNV-1a varies little in the lower
+	 * bits for strings with the same end, e.g. file names.
+	 */
+	private static long mix(long fingerprint) {
+		long hash = fingerprint;
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * Deletes the file of the table. The direct buffers are freed by the garbage
+	 * collector.
+	 */
+	@Override
+	public void close() {
+		segments = new LongBuffer[0];
+		if (overflowChannel != null) {
+			delete(overflowChannel, overflowFile);
+			overflowChannel = null;
+			overflowFile = null;
+		}
+	}
+
+	/**
+	 * A mapped file is only unmapped by the garbage collector and Windows can't
+	 * delete it before. Such a file is deleted on exit instead.
+	 */
+	private void delete(FileChannel channel, Path file) {
+		try {
+			channel.close();
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			log.debug("Can't delete {} yet, it is deleted on exit", file, e);
+		}
+	}
+}
@@ -1,6 +1,6 @@
 package org.frost.repair;
 /*
-  Copyright 2021 - 2023 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+  Copyright 2021 - 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
 
   Licensed under the Apache License, Version 2.0 (the "License");
   you may not use this file except in compliance with the License.
@@ -15,32 +15,29 @@ package org.frost.repair;
   limitations under the License.
 */
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
-import org.garret.perst.AssertionFailed;
-import org.garret.perst.IPersistentList;
 import org.garret.perst.Index;
 import org.garret.perst.Storage;
-import org.garret.perst.StorageError;
 import org.garret.perst.StorageFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import frost.storage.perst.PerstString;
+import frost.storage.perst.messagearchive.ArchiveMessageStorageRoot;
 import frost.storage.perst.messages.MessageContentStorageRoot;
 import frost.storage.perst.messages.MessageStorageRoot;
-import frost.storage.perst.messages.PerstAttachments;
-import frost.storage.perst.messages.PerstBoardAttachment;
-import frost.storage.perst.messages.PerstFileAttachment;
 import frost.storage.perst.messages.PerstFrostBoardObject;
-import frost.storage.perst.messages.PerstFrostMessageObject;
 
 public class FrostRepair {
 
@@ -52,8 +49,28 @@ public class FrostRepair {
 
 	private static final String MESSAGE_FILE = "messages.dbs";
 	private static final String MESSAGE_CONTENT_FILE = "messagesContents.dbs";
+	private static final String MESSAGE_ARCHIVE_FILE = "messageArchive.dbs";
+	private static final String METRICS_FILE = "frost-repair-metrics.json";
+	private static final String REPORT_FILE = "frost-repair-report.ndjson";
 
 	private static final String PERST_ENCODING = "perst.string.encoding";
+	private static final String PERST_OBJECT_CACHE_SIZE = "perst.object.cache.init.size";
+
+	private static final Long MEBIBYTE = 1024L * 1024L;
+
+	// Direct memory for the keys of the export, a larger set moves to a file
+	private static final Long EXPORTED_KEYS_MEMORY = 256L * MEBIBYTE;
+
+	// Strings of --intern-strings
+	private static final Integer INTERNED_STRINGS = 100000;
+
+	private final RepairOptions options;
+
+	private final RepairMetrics metrics = new RepairMetrics();
+
+	public FrostRepair(RepairOptions options) {
+		this.options = options;
+	}
 
 	private String getTempDir() {
 		return System.getProperty("java.io.tmpdir");
@@ -66,238 +83,518 @@ public class FrostRepair {
 		destination.toFile().deleteOnExit();
 
 		log.info("Copy {} to temporary folder...", source.getFileName());
+		long start = System.nanoTime();
 		Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+		metrics.time(RepairMetrics.TEMP_COPY, start);
 	}
 
-	private Storage openStorage(String filename) {
+	private Storage createStorage(String filename, Long pagePoolSize, Integer objectCacheSize) {
+		log.info("Open {} with page pool of {} MiB and object cache of {} objects", filename,
+				pagePoolSize / MEBIBYTE, objectCacheSize);
 		Storage storage = StorageFactory.getInstance().createStorage();
 		storage.setProperty(PERST_ENCODING, CHARSET.name());
-		storage.open(filename, Storage.DEFAULT_PAGE_POOL_SIZE);
+		storage.setProperty(PERST_OBJECT_CACHE_SIZE, objectCacheSize);
 		return storage;
 	}
 
-	public void repair(String path) throws IOException {
-		log.info("Repair dbs-files ...");
-
-		String tempDir = getTempDir();
-
-		copyFileToTemp(Paths.get(path, STORE_PATH, MESSAGE_FILE));
-		copyFileToTemp(Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE));
-
-		repairMessages(Paths.get(tempDir, MESSAGE_FILE), Paths.get(tempDir, MESSAGE_CONTENT_FILE),
-				Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE + ".repaired"));
+	private Storage openStorage(String filename, Long pagePoolSize, Integer objectCacheSize) {
+		Storage storage = createStorage(filename, pagePoolSize, objectCacheSize);
+		long start = System.nanoTime();
+		storage.open(filename, pagePoolSize);
+		metrics.time(RepairMetrics.STORAGE_OPEN, start);
+		return storage;
 	}
 
-	private Boolean isKnownError(Throwable e) {
-		if (e instanceof ClassCastException) {
-			return true;
-		} else if (e instanceof AssertionFailed) {
-			return true;
-		} else if (e instanceof ArrayIndexOutOfBoundsException) {
-			return true;
-		} else if (e instanceof StorageError) {
-			Integer errorCode = ((StorageError) e).getErrorCode();
-			if (errorCode == StorageError.DELETED_OBJECT || errorCode == StorageError.INVALID_OID
-					|| errorCode == StorageError.FILE_ACCESS_ERROR) {
-				return true;
-			}
+	private Storage openSourceStorage(Path filename, StorageSizing sizing) throws IOException {
+		Long pagePoolSize = sizing.getSourcePagePoolSize(Files.size(filename));
+		Integer objectCacheSize = sizing.getObjectCacheSize(pagePoolSize);
+		if (!options.isReadOnly()) {
+			return openStorage(filename.toString(), pagePoolSize, objectCacheSize);
 		}
-		return false;
+		Storage storage = createStorage(filename.toString(), pagePoolSize, objectCacheSize);
+		long start = System.nanoTime();
+		storage.open(new ReadOnlyFile(filename), pagePoolSize);
+		metrics.time(RepairMetrics.STORAGE_OPEN, start);
+		return storage;
 	}
 
-	private Integer repairMessagesFromList(MessageContentStorageRoot oldMessageContentRoot,
-			MessageContentStorageRoot newMessageContentRoot, Storage newMessageContentStorage,
-			Iterator<PerstFrostMessageObject> messageIt) {
-		Integer messageCount = 0;
-		Index<PerstString> messageContents = oldMessageContentRoot.getContentByMsgOid();
-		Index<PerstString> publicKeys = oldMessageContentRoot.getPublickeyByMsgOid();
-		Index<PerstString> signatures = oldMessageContentRoot.getSignatureByMsgOid();
-		Index<PerstAttachments> attachments = oldMessageContentRoot.getAttachmentsByMsgOid();
-
-		Index<PerstString> messageContentsNew = newMessageContentRoot.getContentByMsgOid();
-		Index<PerstString> publicKeysNew = newMessageContentRoot.getPublickeyByMsgOid();
-		Index<PerstString> signaturesNew = newMessageContentRoot.getSignatureByMsgOid();
-		Index<PerstAttachments> attachmentsNew = newMessageContentRoot.getAttachmentsByMsgOid();
-
-		while (messageIt.hasNext()) {
-			PerstFrostMessageObject message = messageIt.next();
-			int oid = message.getOid();
-			messageCount = messageCount + 1;
-
-			PerstString messageContent = null;
-			try {
-				messageContent = messageContents.get(oid);
-			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-				if (isKnownError(e)) {
-					log.warn("Remove broken message (OID = {})", oid);
-				} else {
-					throw e;
-				}
+	/**
+	 * Counts the broken parts of all messages without writing anything.
+	 */
+	public void check(String path) throws IOException {
+		log.info("Check dbs-files ...");
+		readStore(path, (reader, boardReader, boards) -> {
+			if (options.getSampleSize() != null) {
+				new SampleCheck(reader, options.getSampleSize()).check(new ArrayList<>(boards));
+				return;
 			}
-
-			PerstString publicKey = null;
+			ProgressReporter progress = new ProgressReporter(countMessages(boards), metrics::getProcessedMessages,
+					options.getProgressSeconds());
+			progress.start();
 			try {
-				publicKey = publicKeys.get(oid);
-			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-				if (isKnownError(e)) {
-					log.warn("Remove broken public key of message (OID = {})", oid);
-				} else {
-					throw e;
-				}
+				log.info("Check message-contents with {} threads ...", options.getThreads());
+				BoardStatistics total = new ParallelBoardCheck(boardReader, options.getThreads())
+						.check(new ArrayList<>(boards));
+				log.info("Checked all boards: {}", total.getCounts());
+			} finally {
+				progress.stop();
 			}
+		});
+	}
 
-			PerstString signature = null;
-			try {
-				signature = signatures.get(oid);
-			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-				if (isKnownError(e)) {
-					log.warn("Remove broken signature of message (OID = {})", oid);
+	/**
+	 * Writes the attachments of all messages to an NDJSON-file without writing a
+	 * repaired dbs-file.
+	 */
+	public void export(String path, Path exportFile) throws IOException {
+		log.info("Export attachments to {} ...", exportFile);
+		readStore(path, (reader, boardReader, boards) -> {
+			boardReader.setExportOnly(true);
+			if (options.isScanContent()) {
+				boardReader.setKeyScanner(new KeyScanner(KeyScanner.FREENET_PREFIXES));
+			}
+			ProgressReporter progress = new ProgressReporter(countMessages(boards), metrics::getProcessedMessages,
+					options.getProgressSeconds());
+			progress.start();
+			// The temporary folder may be in memory, the folder of the export has room
+			// for as many keys
+			try (FingerprintSet exportedKeys = options.isDeduplicateKeys()
+					? new FingerprintSet(EXPORTED_KEYS_MEMORY, exportFile.toAbsolutePath().getParent())
+					: null; KeyExport export = new KeyExport(exportFile)) {
+				export.setDeduplicate(exportedKeys);
+				if (options.getThreads() > 1) {
+					log.info("Export attachments with {} threads ...", options.getThreads());
+					new ParallelBoardRepair(boardReader, options.getThreads()).repair(new ArrayList<>(boards), export);
 				} else {
-					throw e;
+					Iterator<PerstFrostBoardObject> boardIt = boards.iterator();
+					while (boardIt.hasNext()) {
+						PerstFrostBoardObject board = boardIt.next();
+						log.info("Export attachments from board {} ...", board.getBoardName());
+						log.info("Exported {}", boardReader.readBoard(board, export));
+					}
 				}
+			} finally {
+				progress.stop();
 			}
+		});
+	}
+
+	/**
+	 * Reads the messages of a store in place, without writing anything to it.
+	 */
+	private interface StoreReader {
+		void read(MessageContentReader reader, BoardReader boardReader, Index<PerstFrostBoardObject> boards)
+				throws IOException;
+	}
+
+	private void readStore(String path, StoreReader storeReader) throws IOException {
+		Path filenameMessages = Paths.get(path, STORE_PATH, MESSAGE_FILE);
+		Path filenameMessageContents = Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE);
+		StorageSizing sizing = new StorageSizing(options.getMemoryBudget(), Files.size(filenameMessages),
+				Files.size(filenameMessageContents));
 
-			IPersistentList<PerstBoardAttachment> boardAttachments = null;
-			IPersistentList<PerstFileAttachment> fileAttachments = null;
+		metrics.register();
+		try {
+			Storage dbMessages = openSourceStorage(filenameMessages, sizing);
 			try {
-				PerstAttachments attachment = attachments.get(oid);
-				if (attachment != null) {
-					try {
-						boardAttachments = attachment.getBoardAttachments();
-						if (boardAttachments != null) {
-							Iterator<PerstBoardAttachment> attachmentIt = boardAttachments.iterator();
-							while (attachmentIt.hasNext()) {
-								attachmentIt.next();
-							}
-						}
-					} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-						if (isKnownError(e)) {
-							boardAttachments = null;
-							log.warn("Remove broken board attachments of message (OID = {})", oid);
-						} else {
-							throw e;
-						}
-					}
-					try {
-						fileAttachments = attachment.getFileAttachments();
-						if (fileAttachments != null) {
-							Iterator<PerstFileAttachment> attachmentIt = fileAttachments.iterator();
-							while (attachmentIt.hasNext()) {
-								attachmentIt.next();
-							}
-						}
-					} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-						if (isKnownError(e)) {
-							fileAttachments = null;
-							log.warn("Remove broken file attachments of message (OID = {})", oid);
-						} else {
-							throw e;
-						}
-					}
+				MessageStorageRoot rootMessages = (MessageStorageRoot) dbMessages.getRoot();
+				if (rootMessages == null) {
+					throw new IOException(String.format("\"%s\" contains no data!", filenameMessages));
 				}
-			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
-				if (isKnownError(e)) {
-					log.warn("Remove broken attachments of message (OID = {})", oid);
-				} else {
-					throw e;
+				Storage dbMessageContents = openSourceStorage(filenameMessageContents, sizing);
+				try {
+					MessageContentStorageRoot rootMessageContents = (MessageContentStorageRoot) dbMessageContents
+							.getRoot();
+					if (rootMessageContents == null) {
+						throw new IOException(String.format("\"%s\" contains no data!", filenameMessageContents));
+					}
+
+					MessageContentReader reader = createReader(dbMessageContents, filenameMessageContents,
+							rootMessageContents);
+					BoardReader boardReader = new BoardReader(reader);
+					boardReader.setMetrics(metrics);
+					boardReader.setReportBroken(false);
+
+					storeReader.read(reader, boardReader, rootMessages.getBoardsByName());
+				} finally {
+					dbMessageContents.close();
 				}
+			} finally {
+				dbMessages.close();
 			}
+		} finally {
+			// Like repair(...), also if the check or export failed
+			metrics.save(Paths.get(path, STORE_PATH, METRICS_FILE));
+			metrics.unregister();
+		}
+	}
 
-			if (messageContent != null) {
-				messageContentsNew.put(oid, new PerstString(messageContent));
-			} else {
-				messageContentsNew.put(oid, new PerstString(""));
-			}
+	public void repair(String path) throws IOException {
+		log.info("Repair dbs-files ...");
 
-			if (publicKey != null) {
-				publicKeysNew.put(oid, new PerstString(publicKey));
-			} else {
-				// Frost does not store missing publicKey,
-				// because Perst can't store null-values!
-				// publicKeysNew.put(oid, null);
-			}
+		Path newMessageContentFile = Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE + ".repaired");
 
-			if (signature != null) {
-				signaturesNew.put(oid, new PerstString(signature));
+		metrics.register();
+		try {
+			if (options.isReadOnly()) {
+				log.info("Open dbs-files read-only, without temporary copies");
+				repairMessages(Paths.get(path, STORE_PATH, MESSAGE_FILE),
+						Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE), newMessageContentFile);
 			} else {
-				// Frost does not store missing signature,
-				// because Perst can't store null-values!
-				// signaturesNew.put(oid, null);
-			}
+				String tempDir = getTempDir();
 
-			attachmentsNew.put(oid, new PerstAttachments(newMessageContentStorage, boardAttachments, fileAttachments));
+				copyFileToTemp(Paths.get(path, STORE_PATH, MESSAGE_FILE));
+				copyFileToTemp(Paths.get(path, STORE_PATH, MESSAGE_CONTENT_FILE));
 
-			if (messageCount % 10000 == 0) {
-				newMessageContentStorage.commit();
+				repairMessages(Paths.get(tempDir, MESSAGE_FILE), Paths.get(tempDir, MESSAGE_CONTENT_FILE),
+						newMessageContentFile);
 			}
+			repairArchive(path);
+			rebuildMessages(path);
+		} finally {
+			// Also saved if the repair failed, to see how far it got
+			metrics.save(Paths.get(path, STORE_PATH, METRICS_FILE));
+			metrics.unregister();
 		}
-		return messageCount;
 	}
 
 	private void repairMessages(Path filenameMessages, Path filenameMessageContents, Path newFilenameMessageContents)
 			throws IOException {
 		log.info("Load messages from {} and {}", filenameMessages, filenameMessageContents);
 
-		Storage dbMessages = openStorage(filenameMessages.toString());
-		MessageStorageRoot rootMessages = (MessageStorageRoot) dbMessages.getRoot();
-		if (rootMessages == null) {
-			throw new IOException(String.format("\"%s\" contains no data!", filenameMessages));
+		Long messageContentsSize = Files.size(filenameMessageContents);
+		StorageSizing sizing = new StorageSizing(options.getMemoryBudget(), Files.size(filenameMessages),
+				messageContentsSize);
+		log.info("Memory for page pools: {} MiB", sizing.getBudget() / MEBIBYTE);
+
+		// Everything that is opened is closed in reverse order, also if the repair
+		// fails, so a failed run can be resumed
+		Storage dbMessages = openSourceStorage(filenameMessages, sizing);
+		try {
+			MessageStorageRoot rootMessages = (MessageStorageRoot) dbMessages.getRoot();
+			if (rootMessages == null) {
+				throw new IOException(String.format("\"%s\" contains no data!", filenameMessages));
+			}
+
+			Storage dbMessageContents = openSourceStorage(filenameMessageContents, sizing);
+			try {
+				MessageContentStorageRoot rootMessageContents = (MessageContentStorageRoot) dbMessageContents
+						.getRoot();
+				if (rootMessageContents == null) {
+					throw new IOException(String.format("\"%s\" contains no data!", filenameMessageContents));
+				}
+				repairMessageContents(rootMessages, dbMessageContents, filenameMessageContents,
+						rootMessageContents, sizing, newFilenameMessageContents);
+			} finally {
+				dbMessageContents.close();
+			}
+		} finally {
+			dbMessages.close();
+		}
+	}
+
+	private void repairMessageContents(MessageStorageRoot rootMessages, Storage dbMessageContents,
+			Path filenameMessageContents, MessageContentStorageRoot rootMessageContents, StorageSizing sizing,
+			Path newFilenameMessageContents) throws IOException {
+		Path checkpointPath = Checkpoint.getPath(newFilenameMessageContents);
+		Path highWaterMarksPath = HighWaterMarks.getPath(newFilenameMessageContents);
+		Checkpoint resumeFrom = null;
+		HighWaterMarks highWaterMarks = null;
+		if (options.isResume()) {
+			resumeFrom = Checkpoint.load(checkpointPath);
+			// Marks of the lists that were done before the checkpoint
+			highWaterMarks = HighWaterMarks.load(highWaterMarksPath);
+			log.info("Continue dbs-file {} after {}", newFilenameMessageContents, resumeFrom);
+		} else if (options.isIncremental()) {
+			highWaterMarks = HighWaterMarks.load(highWaterMarksPath);
+			highWaterMarks.setLookbackDays(options.getLookbackDays());
+			log.info("Update dbs-file {} with new messages", newFilenameMessageContents);
+		} else {
+			log.info("Creating new dbs-file {}", newFilenameMessageContents);
+			Files.deleteIfExists(newFilenameMessageContents);
+			Files.deleteIfExists(checkpointPath);
+			Files.deleteIfExists(highWaterMarksPath);
+			// The merge-join reads no board lists, so it has no marks
+			if (!options.isMergeJoin()) {
+				highWaterMarks = new HighWaterMarks();
+			}
 		}
+		Long newPagePoolSize = sizing.getTargetPagePoolSize(Files.size(filenameMessageContents));
+		Storage dbMessageContentsNew = openStorage(newFilenameMessageContents.toString(), newPagePoolSize,
+				sizing.getObjectCacheSize(newPagePoolSize));
+		Boolean finished = false;
+		try {
+			MessageContentStorageRoot rootMessageContentsNew = (MessageContentStorageRoot) dbMessageContentsNew
+					.getRoot();
+			if (rootMessageContentsNew == null) {
+				rootMessageContentsNew = new MessageContentStorageRoot(dbMessageContentsNew);
+				dbMessageContentsNew.setRoot(rootMessageContentsNew);
+				dbMessageContentsNew.commit();
+			}
 
-		Storage dbMessageContents = openStorage(filenameMessageContents.toString());
-		MessageContentStorageRoot rootMessageContents = (MessageContentStorageRoot) dbMessageContents.getRoot();
-		if (rootMessageContents == null) {
-			throw new IOException(String.format("\"%s\" contains no data!", filenameMessageContents));
+			// Rows of an aborted or earlier run are kept
+			try (RepairReport report = new RepairReport(newFilenameMessageContents.resolveSibling(REPORT_FILE),
+					options.isResume() || options.isIncremental())) {
+				copyMessageContents(rootMessages, dbMessageContents, filenameMessageContents, rootMessageContents,
+						dbMessageContentsNew, rootMessageContentsNew, report, resumeFrom, highWaterMarks,
+						checkpointPath, highWaterMarksPath);
+			}
+			finished = true;
+		} finally {
+			try {
+				if (!finished) {
+					// Closing commits, but the checkpoint only covers the last commit
+					dbMessageContentsNew.rollback();
+					if (Files.exists(checkpointPath)) {
+						log.error("Repair of {} failed, continue it with --resume from checkpoint {}",
+								newFilenameMessageContents, checkpointPath);
+					} else {
+						log.error("Repair of {} failed", newFilenameMessageContents);
+					}
+				}
+			} finally {
+				dbMessageContentsNew.close();
+			}
 		}
+		Files.deleteIfExists(checkpointPath);
+		if (highWaterMarks != null) {
+			highWaterMarks.save(highWaterMarksPath);
+		}
+
+		log.info("Saved repaired dbs-file {}", newFilenameMessageContents);
+	}
 
-		log.info("Creating new dbs-file {}", newFilenameMessageContents);
-		Files.deleteIfExists(newFilenameMessageContents);
-		Storage dbMessageContentsNew = openStorage(newFilenameMessageContents.toString());
-		MessageContentStorageRoot rootMessageContentsNew = (MessageContentStorageRoot) dbMessageContentsNew.getRoot();
-		if (rootMessageContentsNew == null) {
-			rootMessageContentsNew = new MessageContentStorageRoot(dbMessageContentsNew);
-			dbMessageContentsNew.setRoot(rootMessageContentsNew);
-			dbMessageContentsNew.commit();
+	private void copyMessageContents(MessageStorageRoot rootMessages, Storage dbMessageContents,
+			Path filenameMessageContents, MessageContentStorageRoot rootMessageContents,
+			Storage dbMessageContentsNew, MessageContentStorageRoot rootMessageContentsNew, RepairReport report,
+			Checkpoint resumeFrom, HighWaterMarks highWaterMarks, Path checkpointPath, Path highWaterMarksPath)
+			throws IOException {
+		MessageContentReader reader = createReader(dbMessageContents, filenameMessageContents, rootMessageContents);
+		reader.setReport(report);
+		CommitScheduler commitScheduler = new CommitScheduler(dbMessageContentsNew, options.getCommitBytes(),
+				options.getCommitObjects(), options.getCommitSeconds());
+		commitScheduler.setMetrics(metrics);
+		MessageContentWriter writer = new MessageContentWriter(dbMessageContentsNew, rootMessageContentsNew,
+				commitScheduler);
+		writer.setMetrics(metrics);
+		if (options.isDeduplicateContent()) {
+			writer.setContentDeduplicator(new PerstStringDeduplicator(dbMessageContentsNew));
+			writer.setPublicKeyDeduplicator(new PerstStringDeduplicator(dbMessageContentsNew));
+		}
+		StringInterner interner = null;
+		if (options.isInternStrings()) {
+			interner = new StringInterner(INTERNED_STRINGS);
+			reader.setInterner(interner);
+			writer.setInterner(interner);
+		}
+		BoardReader boardReader = new BoardReader(reader);
+		boardReader.setMetrics(metrics);
+		if (options.isIncremental()) {
+			boardReader.readNewMessages(highWaterMarks);
+		} else if (highWaterMarks != null) {
+			boardReader.recordHighWaterMarks(highWaterMarks);
 		}
+		writer.setSkipExisting(options.isResume() || options.isIncremental());
 
 		Index<PerstFrostBoardObject> boards = rootMessages.getBoardsByName();
-		Iterator<PerstFrostBoardObject> boardIt = boards.iterator();
+		if (options.isMergeJoin()) {
+			MergeJoinRepair mergeJoin = new MergeJoinRepair(rootMessageContents, reader, dbMessageContentsNew,
+					rootMessageContentsNew, commitScheduler);
+			mergeJoin.setMetrics(metrics);
+			ProgressReporter progress = new ProgressReporter(countMessages(boards), mergeJoin::getProcessedMessages,
+					options.getProgressSeconds());
+			progress.start();
+			try {
+				mergeJoin.repair(boards);
+			} finally {
+				progress.stop();
+			}
+		} else {
+			ProgressReporter progress = new ProgressReporter(countMessages(boards), metrics::getProcessedMessages,
+					options.getProgressSeconds());
+			progress.start();
+			try {
+				if (options.getThreads() > 1) {
+					log.info("Copy message-contents with {} threads ...", options.getThreads());
+					List<PerstFrostBoardObject> boardList = new ArrayList<>(boards);
+					new ParallelBoardRepair(boardReader, options.getThreads()).repair(boardList, writer::write);
+				} else {
+					Checkpoint position = new Checkpoint();
+					boardReader.trackPosition(position);
+					if (resumeFrom != null) {
+						boardReader.resumeFrom(resumeFrom);
+					}
+					commitScheduler.setCommitListener(() -> saveCheckpoint(position, checkpointPath,
+							highWaterMarks, highWaterMarksPath));
+
+					Iterator<PerstFrostBoardObject> boardIt = boards.iterator();
+					while (boardIt.hasNext()) {
+						PerstFrostBoardObject board = boardIt.next();
+						log.info("Copy message-contents from board {} ...", board.getBoardName());
+						BoardStatistics statistics = boardReader.readBoard(board, writer::write);
+						log.info("Copied {}", statistics);
+					}
+				}
+			} finally {
+				progress.stop();
+			}
+		}
+		writer.finish();
+		if (interner != null) {
+			log.info("Reused {} of {} public keys and attachment strings", interner.getHitCount(),
+					interner.getHitCount() + interner.getMissCount());
+		}
+	}
 
+	private MessageContentReader createReader(Storage dbMessageContents, Path filenameMessageContents,
+			MessageContentStorageRoot rootMessageContents) throws IOException {
+		MessageContentReader reader = new MessageContentReader(rootMessageContents);
+		reader.setMetrics(metrics);
+		if (options.isPreScan()) {
+			log.info("Pre-scan message-contents ...");
+			reader.setKnownBroken(new PreScan(dbMessageContents).scan(rootMessageContents));
+		}
+		if (options.isSalvage()) {
+			log.info("Salvage unreachable message-contents ...");
+			reader.setSalvaged(new RawSalvage(dbMessageContents, filenameMessageContents, rootMessageContents).scan());
+		}
+		return reader;
+	}
+
+	/**
+	 * Sizes of the same lists as BoardReader.readBoard(...). The sizes are stored
+	 * in the indexes, so no message is read.
+	 */
+	private Long countMessages(Index<PerstFrostBoardObject> boards) {
+		Long total = 0L;
+		Integer boardCount = 0;
+		Iterator<PerstFrostBoardObject> boardIt = boards.iterator();
 		while (boardIt.hasNext()) {
 			PerstFrostBoardObject board = boardIt.next();
-			log.info("Copy message-contents from board {} ...", board.getBoardName());
-
-			// @see frost.storage.perst.messages.MessageStorage.insertMessage(...)
-			// getMessageIndex() = All valid messages
-			// getUnreadMessageIndex() = Subset of getMessageIndex()
-			// getFlaggedMessageIndex() = Subset of getMessageIndex()
-			// getStarredMessageIndex() = Subset of getMessageIndex()
-			// getMessageIdIndex() = Subset of getMessageIndex()
-			// getInvalidMessagesIndex() = All invalid messages, never shown in GUI
-			// getSentMessagesList() = All sent messages, OID differs
-
-			Integer messageCount = repairMessagesFromList(rootMessageContents, rootMessageContentsNew,
-					dbMessageContentsNew, board.getMessageIndex().iterator());
-			log.debug("getMessageIndex = {}", messageCount);
-
-			messageCount = repairMessagesFromList(rootMessageContents, rootMessageContentsNew, dbMessageContentsNew,
-					board.getInvalidMessagesIndex().iterator());
-			log.debug("getInvalidMessagesIndex = {}", messageCount);
-
-			messageCount = repairMessagesFromList(rootMessageContents, rootMessageContentsNew, dbMessageContentsNew,
-					board.getSentMessagesList().iterator());
-			log.debug("getSentMessagesList = {}", messageCount);
-
-			// @see frost.storage.perst.messages.PerstFrostUnsentMessageObject
-			// getUnsentMessagesList() = All unsent messages, stored in MESSAGE_FILE
-			// getDraftMessagesList() = Not used in Frost, stored in MESSAGE_FILE
-
-			dbMessageContentsNew.commit();
+			total = total + board.getMessageIndex().size() + board.getInvalidMessagesIndex().size()
+					+ board.getSentMessagesList().size();
+			boardCount = boardCount + 1;
 		}
-		dbMessages.close();
-		dbMessageContents.close();
-		dbMessageContentsNew.close();
+		log.info("Found {} messages in {} boards", total, boardCount);
+		return total;
+	}
 
-		log.info("Saved repaired dbs-file {}", newFilenameMessageContents);
+	private void repairArchive(String path) throws IOException {
+		if (!options.isRepairArchive()) {
+			return;
+		}
+		Path filenameArchive = Paths.get(path, STORE_PATH, MESSAGE_ARCHIVE_FILE);
+		Path newFilenameArchive = Paths.get(path, STORE_PATH, MESSAGE_ARCHIVE_FILE + ".repaired");
+		if (!Files.exists(filenameArchive)) {
+			log.warn("{} does not exist, skip message archive", filenameArchive);
+			return;
+		}
+		if (!options.isReadOnly()) {
+			copyFileToTemp(filenameArchive);
+			filenameArchive = Paths.get(getTempDir(), MESSAGE_ARCHIVE_FILE);
+		}
+
+		log.info("Load archived messages from {}", filenameArchive);
+		Long archiveSize = Files.size(filenameArchive);
+		StorageSizing sizing = new StorageSizing(options.getMemoryBudget(), archiveSize);
+		// Closed in reverse order, also if the repair fails
+		Storage dbArchive = openSourceStorage(filenameArchive, sizing);
+		try {
+			ArchiveMessageStorageRoot rootArchive = (ArchiveMessageStorageRoot) dbArchive.getRoot();
+			if (rootArchive == null) {
+				throw new IOException(String.format("\"%s\" contains no data!", filenameArchive));
+			}
+
+			log.info("Creating new dbs-file {}", newFilenameArchive);
+			Files.deleteIfExists(newFilenameArchive);
+			Long newPagePoolSize = sizing.getTargetPagePoolSize(archiveSize);
+			Storage dbArchiveNew = openStorage(newFilenameArchive.toString(), newPagePoolSize,
+					sizing.getObjectCacheSize(newPagePoolSize));
+			Boolean finished = false;
+			try {
+				ArchiveMessageStorageRoot rootArchiveNew = new ArchiveMessageStorageRoot(dbArchiveNew);
+				dbArchiveNew.setRoot(rootArchiveNew);
+				dbArchiveNew.commit();
+
+				CommitScheduler commitScheduler = new CommitScheduler(dbArchiveNew, options.getCommitBytes(),
+						options.getCommitObjects(), options.getCommitSeconds());
+				commitScheduler.setMetrics(metrics);
+				new ArchiveRepair(dbArchiveNew, rootArchiveNew, commitScheduler).repair(rootArchive);
+				commitScheduler.commit();
+				commitScheduler.logStatistics();
+				finished = true;
+			} finally {
+				try {
+					if (!finished) {
+						// Closing commits
+						dbArchiveNew.rollback();
+						log.error("Repair of {} failed", newFilenameArchive);
+					}
+				} finally {
+					dbArchiveNew.close();
+				}
+			}
+		} finally {
+			dbArchive.close();
+		}
+
+		log.info("Saved repaired dbs-file {}", newFilenameArchive);
+	}
+
+	private void rebuildMessages(String path) throws IOException {
+		if (!options.isRebuildMessages()) {
+			return;
+		}
+		Path filenameMessages = Paths.get(path, STORE_PATH, MESSAGE_FILE);
+		Path newFilenameMessages = Paths.get(path, STORE_PATH, MESSAGE_FILE + ".repaired");
+		Path workFilenameMessages = Paths.get(path, STORE_PATH, MESSAGE_FILE + ".rebuild");
+
+		// The indexes are rebuilt in a copy, which is compacted into the new dbs-file
+		log.info("Copy {} to {} ...", filenameMessages, workFilenameMessages);
+		Files.copy(filenameMessages, workFilenameMessages, StandardCopyOption.REPLACE_EXISTING);
+		try {
+			Long size = Files.size(workFilenameMessages);
+			StorageSizing sizing = new StorageSizing(options.getMemoryBudget(), size);
+			Long pagePoolSize = sizing.getSourcePagePoolSize(size);
+			Storage dbMessages = openStorage(workFilenameMessages.toString(), pagePoolSize,
+					sizing.getObjectCacheSize(pagePoolSize));
+			try {
+				MessageStorageRoot rootMessages = (MessageStorageRoot) dbMessages.getRoot();
+				if (rootMessages == null) {
+					throw new IOException(String.format("\"%s\" contains no data!", filenameMessages));
+				}
+				new MessageIndexRebuilder(dbMessages).rebuild(rootMessages);
+
+				log.info("Compact rebuilt dbs-file into {} ...", newFilenameMessages);
+				try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(newFilenameMessages))) {
+					dbMessages.backup(out);
+				}
+			} finally {
+				dbMessages.close();
+			}
+		} finally {
+			Files.deleteIfExists(workFilenameMessages);
+		}
+
+		Long oldSize = Files.size(filenameMessages);
+		Long newSize = Files.size(newFilenameMessages);
+		log.info("Saved repaired dbs-file {}: {} MiB instead of {} MiB ({}% smaller)", newFilenameMessages,
+				newSize / MEBIBYTE, oldSize / MEBIBYTE, oldSize > 0 ? (oldSize - newSize) * 100 / oldSize : 0);
+	}
+
+	/**
+	 * The marks are saved with the checkpoint, so a resumed repair still knows the
+	 * marks of the lists it skips.
+	 */
+	private void saveCheckpoint(Checkpoint position, Path checkpointPath, HighWaterMarks highWaterMarks,
+			Path highWaterMarksPath) {
+		try {
+			if (highWaterMarks != null) {
+				highWaterMarks.save(highWaterMarksPath);
+			}
+			position.save(checkpointPath);
+		} catch (IOException e) {
+			log.warn("Can't save checkpoint {}", checkpointPath, e);
+		}
 	}
 }
\ No newline at end of file
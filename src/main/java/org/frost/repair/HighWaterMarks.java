@@ -0,0 +1,117 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.garret.perst.Index;
+import org.garret.perst.Key;
+
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Latest message date per board and index, saved next to the new dbs-file
+ * after every repair and with every checkpoint. The next incremental repair
+ * only reads messages from this date on, less the lookback: Frost also
+ * downloads messages that are dated some days back, which may arrive after
+ * the last repair.
+ */
+public class HighWaterMarks {
+
+	private static final Long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+	private final Map<String, Long> marks = new ConcurrentHashMap<>();
+
+	private Long lookback = 0L;
+
+	public static Path getPath(Path newFilename) {
+		return Paths.get(newFilename.toString() + ".hwm");
+	}
+
+	/**
+	 * @return Saved marks or no marks if the file does not exist
+	 */
+	public static HighWaterMarks load(Path path) throws IOException {
+		HighWaterMarks highWaterMarks = new HighWaterMarks();
+		if (!Files.exists(path)) {
+			return highWaterMarks;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(path)) {
+			properties.load(in);
+		}
+		for (String name : properties.stringPropertyNames()) {
+			try {
+				highWaterMarks.marks.put(name, Long.valueOf(properties.getProperty(name)));
+			} catch (NumberFormatException e) {
+				throw new IOException(String.format("High-water marks \"%s\" are broken!", path), e);
+			}
+		}
+		return highWaterMarks;
+	}
+
+	/**
+	 * @param days Days before the marks that are read again, e.g. the download
+	 *             window of Frost
+	 */
+	public void setLookbackDays(Integer days) {
+		this.lookback = days * MILLIS_PER_DAY;
+	}
+
+	public void save(Path path) throws IOException {
+		Properties properties = new Properties();
+		for (Map.Entry<String, Long> mark : marks.entrySet()) {
+			properties.setProperty(mark.getKey(), mark.getValue().toString());
+		}
+		Path temp = Paths.get(path.toString() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			properties.store(out, "Frost-Repair high-water marks");
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Iterates the messages of an index that is keyed by message date, starting
+	 * with the latest date of the last run less the lookback. Messages from then
+	 * on are read again, because they may have been received after the last run.
+	 */
+	public Iterable<PerstFrostMessageObject> newMessages(String boardName, String listName,
+			Index<PerstFrostMessageObject> index) {
+		Long mark = marks.get(getName(boardName, listName));
+		if (mark == null) {
+			return index;
+		}
+		return index.iterator(new Key(mark - lookback, true), null, Index.ASCENT_ORDER);
+	}
+
+	public void update(String boardName, String listName, long date) {
+		marks.merge(getName(boardName, listName), date, Math::max);
+	}
+
+	private String getName(String boardName, String listName) {
+		return boardName + "." + listName;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+/**
+ * Minimal helpers to write JSON without another dependency.
+ */
+public final class Json {
+
+	private Json() {
+	}
+
+	/**
+	 * @return value as JSON string including the quotes or null
+	 */
+	public static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder result = new StringBuilder(value.length() + 2);
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c == '\n') {
+				result.append("\\n");
+			} else if (c == '\r') {
+				result.append("\\r");
+			} else if (c == '\t') {
+				result.append("\\t");
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+		result.append('"');
+		return result.toString();
+	}
+}
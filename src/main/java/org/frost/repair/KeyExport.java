@@ -0,0 +1,141 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Writes one JSON line per file and board attachment and per key found in the
+ * content, together with the board and date of its message, so Spider can
+ * import the keys without a repaired dbs-file. Only one thread may use an
+ * export.
+ */
+public class KeyExport implements MessageSink, Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(KeyExport.class);
+
+	private static final Integer BUFFER_SIZE = 1024 * 1024;
+
+	private final Path filename;
+	private final BufferedWriter writer;
+
+	private long fileCount;
+	private long boardCount;
+	private long contentCount;
+
+	private FingerprintSet exportedKeys;
+
+	public KeyExport(Path filename) throws IOException {
+		this.filename = filename;
+		writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(filename), StandardCharsets.UTF_8),
+				BUFFER_SIZE);
+	}
+
+	public Path getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Exports every key only once, with the first message it was found in. Board
+	 * attachments without public key are compared by name.
+	 */
+	public void setDeduplicate(FingerprintSet exportedKeys) {
+		this.exportedKeys = exportedKeys;
+	}
+
+	@Override
+	public void accept(RepairedMessage message) throws IOException {
+		StringBuilder line = new StringBuilder(256);
+		if (message.getFileAttachments() != null) {
+			for (PerstFileAttachment attachment : message.getFileAttachments()) {
+				if (isExported(attachment.getCHKKey())) {
+					continue;
+				}
+				start(line, "file", message);
+				line.append(",\"name\":").append(Json.quote(attachment.getName()));
+				line.append(",\"size\":").append(attachment.getSize());
+				line.append(",\"key\":").append(Json.quote(attachment.getCHKKey()));
+				line.append("}\n");
+				fileCount = fileCount + 1;
+			}
+		}
+		if (message.getBoardAttachments() != null) {
+			for (PerstBoardAttachment attachment : message.getBoardAttachments()) {
+				String key = attachment.getPubKey() != null ? attachment.getPubKey() : "board:" + attachment.getName();
+				if (isExported(key)) {
+					continue;
+				}
+				start(line, "board", message);
+				line.append(",\"name\":").append(Json.quote(attachment.getName()));
+				line.append(",\"pubKey\":").append(Json.quote(attachment.getPubKey()));
+				line.append(",\"description\":").append(Json.quote(attachment.getDescription()));
+				line.append("}\n");
+				boardCount = boardCount + 1;
+			}
+		}
+		for (String key : message.getContentKeys()) {
+			if (isExported(key)) {
+				continue;
+			}
+			start(line, "content", message);
+			line.append(",\"key\":").append(Json.quote(key));
+			line.append("}\n");
+			contentCount = contentCount + 1;
+		}
+		// One write per message instead of one per attachment
+		if (line.length() > 0) {
+			writer.write(line.toString());
+		}
+	}
+
+	private boolean isExported(String key) throws IOException {
+		if (exportedKeys == null || key == null) {
+			return false;
+		}
+		return !exportedKeys.add(key);
+	}
+
+	private void start(StringBuilder line, String type, RepairedMessage message) {
+		line.append("{\"type\":").append(Json.quote(type));
+		line.append(",\"board\":").append(Json.quote(message.getBoardName()));
+		line.append(",\"date\":").append(message.getDateAndTime());
+		line.append(",\"oid\":").append(message.getOid());
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+		log.info("Exported {} file attachments, {} board attachments and {} keys from contents to {}", fileCount,
+				boardCount, contentCount, filename);
+		if (exportedKeys != null) {
+			log.info("Skipped {} duplicates of {} unique keys", exportedKeys.getDuplicateCount(),
+					exportedKeys.size());
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds Freenet keys in text with a single pass over its characters. The
+ * prefixes are matched by an Aho-Corasick automaton, compiled to a table of
+ * transitions, so every character costs one lookup no matter how many prefixes
+ * there are. The key is then read from its prefix up to the first character
+ * that can't be part of a key.
+ * <p>
+ * The scanner is not modified after it is created, so threads may share it.
+ */
+public class KeyScanner {
+
+	public static final List<String> FREENET_PREFIXES = Arrays.asList("CHK@", "SSK@", "USK@", "KSK@");
+
+	// Shorter keys are just the prefix mentioned in text
+	private static final Integer MIN_KEY_LENGTH = 8;
+
+	private static final String STOP_CHARACTERS = "\"'<>()[]{}|\\`";
+	private static final String TRAILING_CHARACTERS = ".,;:!?";
+
+	// Index of every character in the prefixes, 0 for all others
+	private final int[] symbols = new int[Character.MAX_VALUE + 1];
+	private final Integer symbolCount;
+
+	// Next state for each state and symbol
+	private final int[] transitions;
+	// Length of the prefix that ends in a state or 0
+	private final int[] matches;
+
+	public KeyScanner(List<String> prefixes) {
+		Integer count = 1;
+		for (String prefix : prefixes) {
+			for (char c : prefix.toCharArray()) {
+				if (symbols[c] == 0) {
+					symbols[c] = count;
+					count = count + 1;
+				}
+			}
+		}
+		symbolCount = count;
+
+		// Trie of the prefixes, state 0 is the root
+		List<int[]> trie = new ArrayList<>();
+		List<Integer> lengths = new ArrayList<>();
+		trie.add(new int[symbolCount]);
+		lengths.add(0);
+		for (String prefix : prefixes) {
+			int state = 0;
+			for (char c : prefix.toCharArray()) {
+				int next = trie.get(state)[symbols[c]];
+				if (next == 0) {
+					next = trie.size();
+					trie.add(new int[symbolCount]);
+					lengths.add(0);
+					trie.get(state)[symbols[c]] = next;
+				}
+				state = next;
+			}
+			lengths.set(state, prefix.length());
+		}
+
+		// Add the failure links breadth-first, so a state only uses states closer to
+		// the root, whose transitions are already complete
+		transitions = new int[trie.size() * symbolCount];
+		matches = new int[trie.size()];
+		int[] failures = new int[trie.size()];
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int symbol = 1; symbol < symbolCount; symbol++) {
+			int next = trie.get(0)[symbol];
+			transitions[symbol] = next;
+			if (next != 0) {
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			matches[state] = Math.max(lengths.get(state), matches[failures[state]]);
+			for (int symbol = 1; symbol < symbolCount; symbol++) {
+				int next = trie.get(state)[symbol];
+				int fallback = transitions[failures[state] * symbolCount + symbol];
+				if (next != 0) {
+					failures[next] = fallback;
+					transitions[state * symbolCount + symbol] = next;
+					queue.add(next);
+				} else {
+					transitions[state * symbolCount + symbol] = fallback;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Distinct keys in the order of the text, empty if there are none
+	 */
+	public List<String> scan(String text) {
+		if (text == null) {
+			return new ArrayList<>(0);
+		}
+		Set<String> keys = null;
+		int state = 0;
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			state = transitions[state * symbolCount + symbols[text.charAt(i)]];
+			i = i + 1;
+			int match = matches[state];
+			if (match == 0) {
+				continue;
+			}
+			int start = i - match;
+			if (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+				continue;
+			}
+			int end = findEnd(text, i);
+			if (end - start >= MIN_KEY_LENGTH) {
+				if (keys == null) {
+					keys = new LinkedHashSet<>();
+				}
+				keys.add(text.substring(start, end));
+				// Prefixes within the key, e.g. of a USK that ends with a CHK, are not keys
+				// of their own
+				i = end;
+				state = 0;
+			}
+		}
+		return keys != null ? new ArrayList<>(keys) : new ArrayList<>(0);
+	}
+
+	private int findEnd(String text, int from) {
+		int end = from;
+		while (end < text.length()) {
+			char c = text.charAt(end);
+			if (Character.isWhitespace(c) || Character.isISOControl(c) || STOP_CHARACTERS.indexOf(c) >= 0) {
+				break;
+			}
+			end = end + 1;
+		}
+		while (end > from && TRAILING_CHARACTERS.indexOf(text.charAt(end - 1)) >= 0) {
+			end = end - 1;
+		}
+		return end;
+	}
+}
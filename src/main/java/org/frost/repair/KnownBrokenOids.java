@@ -0,0 +1,142 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.garret.perst.StorageError;
+
+/**
+ * Message OIDs whose parts are known to be broken, e.g. found by the pre-scan.
+ * Filled and sorted once, afterwards only read, so several threads may share
+ * it without locks.
+ */
+public class KnownBrokenOids {
+
+	/**
+	 * Why a part is broken. Error and code match the exception Perst would throw
+	 * for the lookup.
+	 */
+	public enum Reason {
+		INVALID_OID("StorageError", StorageError.INVALID_OID),
+		DELETED_OBJECT("StorageError", StorageError.DELETED_OBJECT),
+		UNEXPECTED_CLASS("ClassCastException", null),
+		BROKEN_HEADER("BrokenHeader", null);
+
+		private final String error;
+		private final Integer errorCode;
+
+		Reason(String error, Integer errorCode) {
+			this.error = error;
+			this.errorCode = errorCode;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public Integer getErrorCode() {
+			return errorCode;
+		}
+	}
+
+	private static class Part {
+		private int[] oids = new int[16];
+		private Reason[] reasons = new Reason[16];
+		private int size;
+		private boolean sorted = true;
+	}
+
+	private final Map<String, Part> parts = new HashMap<>();
+
+	/**
+	 * The OIDs may come in any order and more than once, e.g. from a broken index.
+	 * Call sort() after the last one.
+	 */
+	public void add(String part, int oid, Reason reason) {
+		Part entries = parts.computeIfAbsent(part, key -> new Part());
+		if (entries.size > 0 && entries.oids[entries.size - 1] >= oid) {
+			entries.sorted = false;
+		}
+		if (entries.size == entries.oids.length) {
+			entries.oids = Arrays.copyOf(entries.oids, entries.size * 2);
+			entries.reasons = Arrays.copyOf(entries.reasons, entries.size * 2);
+		}
+		entries.oids[entries.size] = oid;
+		entries.reasons[entries.size] = reason;
+		entries.size = entries.size + 1;
+	}
+
+	/**
+	 * Sorts the OIDs of all parts and removes duplicates. The reason that was
+	 * added first is kept.
+	 * 
+	 * @return Number of removed duplicates
+	 */
+	public long sort() {
+		long duplicates = 0;
+		for (Part entries : parts.values()) {
+			if (entries.sorted) {
+				continue;
+			}
+			// OID in the upper and position in the lower bits, so equal OIDs stay in the
+			// order they were added
+			long[] order = new long[entries.size];
+			for (int i = 0; i < entries.size; i++) {
+				order[i] = ((long) entries.oids[i] << 32) | i;
+			}
+			Arrays.sort(order);
+			int[] oids = new int[entries.size];
+			Reason[] reasons = new Reason[entries.size];
+			int size = 0;
+			for (long value : order) {
+				int oid = (int) (value >> 32);
+				if (size > 0 && oids[size - 1] == oid) {
+					duplicates = duplicates + 1;
+					continue;
+				}
+				oids[size] = oid;
+				reasons[size] = entries.reasons[(int) value];
+				size = size + 1;
+			}
+			entries.oids = oids;
+			entries.reasons = reasons;
+			entries.size = size;
+			entries.sorted = true;
+		}
+		return duplicates;
+	}
+
+	/**
+	 * @return Reason or null if the part is not known to be broken
+	 */
+	public Reason getReason(String part, int oid) {
+		Part entries = parts.get(part);
+		if (entries == null) {
+			return null;
+		}
+		int index = Arrays.binarySearch(entries.oids, 0, entries.size, oid);
+		return index >= 0 ? entries.reasons[index] : null;
+	}
+
+	public long size(String part) {
+		Part entries = parts.get(part);
+		return entries != null ? entries.size : 0;
+	}
+}
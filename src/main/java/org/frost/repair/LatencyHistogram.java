@@ -0,0 +1,100 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in buckets of powers of two nanoseconds. Works without
+ * locks, so several threads can record every single message.
+ */
+public class LatencyHistogram {
+
+	private static final Integer BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+	public void record(long nanos) {
+		record(nanos, 1);
+	}
+
+	/**
+	 * Records a duration that stands for several, e.g. if only a sample is timed.
+	 */
+	public void record(long nanos, long weight) {
+		long value = Math.max(0, nanos);
+		buckets.addAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)), weight);
+		count.add(weight);
+		totalNanos.add(value * weight);
+		maxNanos.accumulate(value);
+	}
+
+	/**
+	 * Records the time since start, which is a value of System.nanoTime().
+	 */
+	public void recordSince(long start) {
+		record(System.nanoTime() - start);
+	}
+
+	public void recordSince(long start, long weight) {
+		record(System.nanoTime() - start, weight);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public long getMeanNanos() {
+		long currentCount = getCount();
+		return currentCount > 0 ? getTotalNanos() / currentCount : 0;
+	}
+
+	/**
+	 * @param percentile e.g. 0.99
+	 * @return Upper bound of the bucket that contains the percentile, at most
+	 *         the max value
+	 */
+	public long getPercentileNanos(double percentile) {
+		long currentCount = getCount();
+		if (currentCount == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(percentile * currentCount);
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum = sum + buckets.get(i);
+			if (sum >= target) {
+				long upperBound = i < BUCKETS - 1 ? (1L << i) - 1 : Long.MAX_VALUE;
+				return Math.min(upperBound, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+}
@@ -17,6 +17,7 @@
 package org.frost.repair;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,13 +38,22 @@ public class Main {
 			}
 		});
 
+		RepairOptions options;
 		try {
-			if (args.length >= 1) {
-				String frostPath = args[0];
-				FrostRepair frostRepair = new FrostRepair();
-				frostRepair.repair(frostPath);
+			options = RepairOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		try {
+			FrostRepair frostRepair = new FrostRepair(options);
+			if (options.getExportFile() != null) {
+				frostRepair.export(options.getFrostPath(), Paths.get(options.getExportFile()));
+			} else if (options.isCheck()) {
+				frostRepair.check(options.getFrostPath());
 			} else {
-				System.out.println("Parameter 1 \"path to Frost\" is missing!");
+				frostRepair.repair(options.getFrostPath());
 			}
 		} catch (IOException e) {
 			log.error("IO-Error!", e);
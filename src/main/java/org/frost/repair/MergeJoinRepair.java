@@ -0,0 +1,246 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Index;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+import frost.storage.perst.messages.PerstFrostBoardObject;
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Copies the message-contents index by index instead of message by message.
+ * The OIDs of all messages are collected and sorted first, then every index of
+ * the old dbs-file is read once in key order and joined with this list. This
+ * replaces four random lookups per message with four sequential scans.
+ */
+public class MergeJoinRepair {
+
+	private static final Logger log = LoggerFactory.getLogger(MergeJoinRepair.class);
+
+	private final MessageContentStorageRoot oldRoot;
+	private final MessageContentReader reader;
+
+	private final Storage storage;
+	private final MessageContentStorageRoot newRoot;
+	private final CommitScheduler commitScheduler;
+
+	private RepairMetrics metrics = new RepairMetrics();
+
+	// Read by the progress reporter
+	private final AtomicLong storedValues = new AtomicLong();
+	private final AtomicLong duplicateCount = new AtomicLong();
+
+	public MergeJoinRepair(MessageContentStorageRoot oldRoot, MessageContentReader reader, Storage storage,
+			MessageContentStorageRoot newRoot, CommitScheduler commitScheduler) {
+		this.oldRoot = oldRoot;
+		this.reader = reader;
+		this.storage = storage;
+		this.newRoot = newRoot;
+		this.commitScheduler = commitScheduler;
+	}
+
+	public void setMetrics(RepairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Messages done, counted like RepairMetrics.getProcessedMessages(). Every
+	 * message is passed once per index, so a message counts a quarter per index.
+	 */
+	public long getProcessedMessages() {
+		return storedValues.get() / 4 + duplicateCount.get();
+	}
+
+	public void repair(Index<PerstFrostBoardObject> boards) {
+		int[] oids = collectOids(boards);
+		log.info("Copy message-contents of {} messages in key order ...", oids.length);
+
+		Index<PerstString> messageContents = newRoot.getContentByMsgOid();
+		scan(MessageContentReader.CONTENT, oldRoot.getContentByMsgOid(), oids, reader::readContent,
+				(oid, value) -> {
+					PerstString content = MessageContentReader.copyContent(value);
+					messageContents.put(oid, content);
+					metrics.add(RepairMetrics.MESSAGES, 1);
+					written(MessageContentWriter.length(content), 1);
+				});
+
+		Index<PerstString> publicKeys = newRoot.getPublickeyByMsgOid();
+		scan(MessageContentReader.PUBLIC_KEY, oldRoot.getPublickeyByMsgOid(), oids, reader::readPublicKey,
+				(oid, value) -> {
+					if (value != null) {
+						PerstString publicKey = MessageContentReader.copy(value);
+						publicKeys.put(oid, publicKey);
+						written(MessageContentWriter.length(publicKey), 1);
+					}
+				});
+
+		Index<PerstString> signatures = newRoot.getSignatureByMsgOid();
+		scan(MessageContentReader.SIGNATURE, oldRoot.getSignatureByMsgOid(), oids, reader::readSignature,
+				(oid, value) -> {
+					if (value != null) {
+						PerstString signature = MessageContentReader.copy(value);
+						signatures.put(oid, signature);
+						written(MessageContentWriter.length(signature), 1);
+					}
+				});
+
+		Index<PerstAttachments> attachments = newRoot.getAttachmentsByMsgOid();
+		scan(MessageContentReader.ATTACHMENTS, oldRoot.getAttachmentsByMsgOid(), oids, reader::readAttachments,
+				(oid, value) -> {
+					List<PerstBoardAttachment> boardAttachments = null;
+					List<PerstFileAttachment> fileAttachments = null;
+					long bytes = 0;
+					long objects = 1;
+					if (value != null) {
+						boardAttachments = reader.readBoardAttachments(oid, value);
+						fileAttachments = reader.readFileAttachments(oid, value);
+					}
+					if (boardAttachments != null) {
+						bytes = bytes + MessageContentWriter.boardAttachmentBytes(boardAttachments);
+						objects = objects + 1 + boardAttachments.size();
+					}
+					if (fileAttachments != null) {
+						bytes = bytes + MessageContentWriter.fileAttachmentBytes(fileAttachments);
+						objects = objects + 1 + fileAttachments.size();
+					}
+					long start = System.nanoTime();
+					attachments.put(oid, new PerstAttachments(storage, boardAttachments, fileAttachments));
+					metrics.time(RepairMetrics.ATTACHMENT_COPY, start);
+					written(bytes, objects);
+				});
+	}
+
+	private void written(long bytes, long objects) {
+		metrics.add(RepairMetrics.BYTES_WRITTEN, bytes);
+		commitScheduler.written(bytes, objects);
+	}
+
+	private int[] collectOids(Index<PerstFrostBoardObject> boards) {
+		OidSet oids = new OidSet();
+		Iterator<PerstFrostBoardObject> boardIt = boards.iterator();
+		while (boardIt.hasNext()) {
+			PerstFrostBoardObject board = boardIt.next();
+			log.info("Collect messages from board {} ...", board.getBoardName());
+			// Same lists as BoardReader.readBoard(...)
+			addAll(oids, board.getMessageIndex().iterator());
+			addAll(oids, board.getInvalidMessagesIndex().iterator());
+			addAll(oids, board.getSentMessagesList().iterator());
+		}
+		return oids.toArray();
+	}
+
+	/**
+	 * The same message may be in several lists, it is only copied once.
+	 */
+	private void addAll(OidSet oids, Iterator<PerstFrostMessageObject> messageIt) {
+		while (messageIt.hasNext()) {
+			if (!oids.add(messageIt.next().getOid())) {
+				duplicateCount.incrementAndGet();
+				metrics.add(RepairMetrics.DUPLICATES, 1);
+			}
+		}
+	}
+
+	/**
+	 * Reads the index in key order and passes the value of every OID to the
+	 * target, null if the index has no readable value for it. If the index itself
+	 * is broken, the remaining OIDs are looked up one by one. Errors of the target
+	 * are not caught, they are no sign of a broken index.
+	 */
+	private <T> void scan(String part, Index<T> index, int[] oids, IntFunction<T> lookup, ValueTarget<T> target) {
+		log.info("Copy {} ...", part);
+		int pos = 0;
+		int found = 0;
+		Boolean broken = false;
+		Iterator<Map.Entry<Object, T>> entryIt = null;
+		while (pos < oids.length) {
+			Map.Entry<Object, T> entry;
+			int key;
+			try {
+				if (entryIt == null) {
+					entryIt = index.entryIterator();
+				}
+				if (!entryIt.hasNext()) {
+					break;
+				}
+				entry = entryIt.next();
+				key = (Integer) entry.getKey();
+			} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+				if (!MessageContentReader.isKnownError(e)) {
+					throw e;
+				}
+				broken = true;
+				break;
+			}
+			while (pos < oids.length && oids[pos] < key) {
+				store(target, oids[pos], null);
+				pos = pos + 1;
+			}
+			if (pos < oids.length && oids[pos] == key) {
+				// Reports a broken value itself
+				T value = reader.lookup(entry::getValue, key, part);
+				if (value != null) {
+					found = found + 1;
+				}
+				store(target, key, value);
+				pos = pos + 1;
+			}
+		}
+		if (broken) {
+			log.warn("Index of {} is broken, look up the remaining {} messages one by one", part, oids.length - pos);
+			while (pos < oids.length) {
+				T value = lookup.apply(oids[pos]);
+				if (value != null) {
+					found = found + 1;
+				}
+				store(target, oids[pos], value);
+				pos = pos + 1;
+			}
+		}
+		while (pos < oids.length) {
+			store(target, oids[pos], null);
+			pos = pos + 1;
+		}
+		log.info("Read {} for {} of {} messages", part, found, oids.length);
+	}
+
+	private <T> void store(ValueTarget<T> target, int oid, T value) {
+		target.store(oid, value);
+		storedValues.incrementAndGet();
+	}
+
+	private interface ValueTarget<T> {
+
+		void store(int oid, T value);
+	}
+}
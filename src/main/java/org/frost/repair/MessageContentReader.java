@@ -0,0 +1,378 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.IPersistentList;
+import org.garret.perst.Index;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Reads the content of messages from the old dbs-file. Only reads, so several
+ * threads may share one reader.
+ */
+public class MessageContentReader {
+
+	private static final Logger log = LoggerFactory.getLogger(MessageContentReader.class);
+
+	public static final String CONTENT = "message";
+	public static final String PUBLIC_KEY = "public key of message";
+	public static final String SIGNATURE = "signature of message";
+	public static final String ATTACHMENTS = "attachments of message";
+	public static final String BOARD_ATTACHMENTS = "board attachments of message";
+	public static final String FILE_ATTACHMENTS = "file attachments of message";
+
+	// Only every n-th lookup is timed, so the workers rarely write to the shared
+	// histograms
+	private static final Integer LOOKUP_SAMPLING = 16;
+
+	// Names of the counters, so counting does not build a new string
+	private static final Map<String, String> BROKEN_COUNTERS = getCounterNames("broken ");
+	private static final Map<String, String> SALVAGED_COUNTERS = getCounterNames("salvaged ");
+
+	private final Index<PerstString> messageContents;
+	private final Index<PerstString> publicKeys;
+	private final Index<PerstString> signatures;
+	private final Index<PerstAttachments> attachments;
+
+	private RepairMetrics metrics = new RepairMetrics();
+	private RepairReport report;
+	private KnownBrokenOids knownBroken;
+	private SalvagedOids salvaged;
+	private StringInterner interner;
+
+	public MessageContentReader(MessageContentStorageRoot messageContentRoot) {
+		messageContents = messageContentRoot.getContentByMsgOid();
+		publicKeys = messageContentRoot.getPublickeyByMsgOid();
+		signatures = messageContentRoot.getSignatureByMsgOid();
+		attachments = messageContentRoot.getAttachmentsByMsgOid();
+	}
+
+	public void setMetrics(RepairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Broken parts are written to the report instead of the log.
+	 */
+	public void setReport(RepairReport report) {
+		this.report = report;
+	}
+
+	/**
+	 * Parts that are known to be broken are not looked up at all, which saves the
+	 * exception.
+	 */
+	public void setKnownBroken(KnownBrokenOids knownBroken) {
+		this.knownBroken = knownBroken;
+	}
+
+	/**
+	 * Values that can't be read via their index are taken from the salvaged OIDs
+	 * instead.
+	 */
+	public void setSalvaged(SalvagedOids salvaged) {
+		this.salvaged = salvaged;
+	}
+
+	/**
+	 * The public keys of the messages that are read are replaced by cached equal
+	 * strings. The attachments are interned by the writer, where they are copied
+	 * anyway.
+	 */
+	public void setInterner(StringInterner interner) {
+		this.interner = interner;
+	}
+
+	public static Boolean isKnownError(Throwable e) {
+		if (e instanceof ClassCastException) {
+			return true;
+		} else if (e instanceof AssertionFailed) {
+			return true;
+		} else if (e instanceof ArrayIndexOutOfBoundsException) {
+			return true;
+		} else if (e instanceof StorageError) {
+			Integer errorCode = ((StorageError) e).getErrorCode();
+			if (errorCode == StorageError.DELETED_OBJECT || errorCode == StorageError.INVALID_OID
+					|| errorCode == StorageError.FILE_ACCESS_ERROR) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Broken parts are not reported, but returned with the message, so the caller
+	 * can report them together with its board.
+	 */
+	public RepairedMessage read(int oid) {
+		List<BrokenPart> brokenParts = new ArrayList<>(0);
+		PerstString messageContent = readContent(oid, brokenParts);
+		PerstString publicKey = readPublicKey(oid, brokenParts);
+		PerstString signature = readSignature(oid, brokenParts);
+
+		List<PerstBoardAttachment> boardAttachments = null;
+		List<PerstFileAttachment> fileAttachments = null;
+		PerstAttachments attachment = readAttachments(oid, brokenParts);
+		if (attachment != null) {
+			boardAttachments = readBoardAttachments(oid, attachment, brokenParts);
+			fileAttachments = readFileAttachments(oid, attachment, brokenParts);
+		}
+
+		return new RepairedMessage(oid, copyContent(messageContent),
+				interner != null ? intern(publicKey) : copy(publicKey), copy(signature), boardAttachments,
+				fileAttachments, brokenParts);
+	}
+
+	/**
+	 * Reads only what the export needs: the attachments and the content if it is
+	 * scanned for keys. Nothing is copied, the values of the old dbs-file are
+	 * only read.
+	 */
+	public RepairedMessage readForExport(int oid, Boolean withContent) {
+		List<BrokenPart> brokenParts = new ArrayList<>(0);
+		PerstString messageContent = withContent ? readContent(oid, brokenParts) : null;
+
+		List<PerstBoardAttachment> boardAttachments = null;
+		List<PerstFileAttachment> fileAttachments = null;
+		PerstAttachments attachment = readAttachments(oid, brokenParts);
+		if (attachment != null) {
+			boardAttachments = readBoardAttachments(oid, attachment, brokenParts);
+			fileAttachments = readFileAttachments(oid, attachment, brokenParts);
+		}
+		return new RepairedMessage(oid, messageContent, null, null, boardAttachments, fileAttachments, brokenParts);
+	}
+
+	public PerstString readContent(int oid) {
+		return readContent(oid, null);
+	}
+
+	public PerstString readContent(int oid, List<BrokenPart> brokenParts) {
+		return lookup(() -> messageContents.get(oid), oid, CONTENT, brokenParts);
+	}
+
+	public PerstString readPublicKey(int oid) {
+		return readPublicKey(oid, null);
+	}
+
+	public PerstString readPublicKey(int oid, List<BrokenPart> brokenParts) {
+		return lookup(() -> publicKeys.get(oid), oid, PUBLIC_KEY, brokenParts);
+	}
+
+	public PerstString readSignature(int oid) {
+		return readSignature(oid, null);
+	}
+
+	public PerstString readSignature(int oid, List<BrokenPart> brokenParts) {
+		return lookup(() -> signatures.get(oid), oid, SIGNATURE, brokenParts);
+	}
+
+	public PerstAttachments readAttachments(int oid) {
+		return readAttachments(oid, null);
+	}
+
+	public PerstAttachments readAttachments(int oid, List<BrokenPart> brokenParts) {
+		return lookup(() -> attachments.get(oid), oid, ATTACHMENTS, brokenParts);
+	}
+
+	public List<PerstBoardAttachment> readBoardAttachments(int oid, PerstAttachments attachment) {
+		return readBoardAttachments(oid, attachment, null);
+	}
+
+	public List<PerstBoardAttachment> readBoardAttachments(int oid, PerstAttachments attachment,
+			List<BrokenPart> brokenParts) {
+		return lookup(() -> readAll(attachment.getBoardAttachments()), oid, BOARD_ATTACHMENTS, brokenParts);
+	}
+
+	public List<PerstFileAttachment> readFileAttachments(int oid, PerstAttachments attachment) {
+		return readFileAttachments(oid, attachment, null);
+	}
+
+	public List<PerstFileAttachment> readFileAttachments(int oid, PerstAttachments attachment,
+			List<BrokenPart> brokenParts) {
+		return lookup(() -> readAll(attachment.getFileAttachments()), oid, FILE_ATTACHMENTS, brokenParts);
+	}
+
+	/**
+	 * Runs a lookup in the old dbs-file and returns null if the result is broken.
+	 * The broken part is reported without board.
+	 * 
+	 * @param part Broken part of the message, used for the report
+	 */
+	public <T> T lookup(Supplier<T> lookup, int oid, String part) {
+		return lookup(lookup, oid, part, null);
+	}
+
+	/**
+	 * @param brokenParts Collects the broken part instead of reporting it, may be
+	 *                    null
+	 */
+	private <T> T lookup(Supplier<T> lookup, int oid, String part, List<BrokenPart> brokenParts) {
+		if (knownBroken != null) {
+			KnownBrokenOids.Reason reason = knownBroken.getReason(part, oid);
+			if (reason != null) {
+				T value = salvage(part, oid);
+				if (value != null) {
+					return value;
+				}
+				metrics.add(getCounterName(BROKEN_COUNTERS, "broken ", part), 1);
+				addBroken(new BrokenPart(part, reason.getError(), reason.getErrorCode()), oid, brokenParts);
+				return null;
+			}
+		}
+		Boolean timed = ThreadLocalRandom.current().nextInt(LOOKUP_SAMPLING) == 0;
+		long start = timed ? System.nanoTime() : 0;
+		try {
+			T value = lookup.get();
+			return value != null ? value : salvage(part, oid);
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (isKnownError(e)) {
+				T value = salvage(part, oid);
+				if (value != null) {
+					return value;
+				}
+				metrics.add(getCounterName(BROKEN_COUNTERS, "broken ", part), 1);
+				addBroken(new BrokenPart(part, e), oid, brokenParts);
+				return null;
+			} else {
+				throw e;
+			}
+		} finally {
+			if (timed) {
+				metrics.lookup(part, start, LOOKUP_SAMPLING);
+			}
+		}
+	}
+
+	private static Map<String, String> getCounterNames(String prefix) {
+		Map<String, String> result = new HashMap<>();
+		for (String part : Arrays.asList(CONTENT, PUBLIC_KEY, SIGNATURE, ATTACHMENTS, BOARD_ATTACHMENTS,
+				FILE_ATTACHMENTS)) {
+			result.put(part, prefix + part);
+		}
+		return result;
+	}
+
+	private static String getCounterName(Map<String, String> names, String prefix, String part) {
+		String name = names.get(part);
+		return name != null ? name : prefix + part;
+	}
+
+	/**
+	 * @return Salvaged value or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T salvage(String part, int oid) {
+		if (salvaged == null) {
+			return null;
+		}
+		T value = (T) salvaged.resolve(part, oid);
+		if (value != null) {
+			metrics.add(getCounterName(SALVAGED_COUNTERS, "salvaged ", part), 1);
+		}
+		return value;
+	}
+
+	private void addBroken(BrokenPart brokenPart, int oid, List<BrokenPart> brokenParts) {
+		if (brokenParts != null) {
+			brokenParts.add(brokenPart);
+		} else {
+			reportBroken(null, null, oid, Collections.singletonList(brokenPart));
+		}
+	}
+
+	/**
+	 * Writes the broken parts of a message to the report or logs them if there is
+	 * no report.
+	 * 
+	 * @param boardName Board of the message or null if unknown
+	 * @param listName  List of the board or null if unknown
+	 */
+	public void reportBroken(String boardName, String listName, int oid, List<BrokenPart> brokenParts) {
+		if (report != null) {
+			report.add(boardName, listName, oid, brokenParts);
+			return;
+		}
+		for (BrokenPart brokenPart : brokenParts) {
+			log.warn("Remove broken {} (OID = {})", brokenPart.getPart(), oid);
+		}
+	}
+
+	/**
+	 * Frost expects content for every message, so missing content is replaced by
+	 * an empty string.
+	 */
+	public static PerstString copyContent(PerstString messageContent) {
+		if (messageContent != null) {
+			return new PerstString(messageContent);
+		} else {
+			return new PerstString("");
+		}
+	}
+
+	/**
+	 * Frost does not store missing publicKey and signature, because Perst can't
+	 * store null-values!
+	 */
+	public static PerstString copy(PerstString value) {
+		if (value != null) {
+			return new PerstString(value);
+		}
+		return null;
+	}
+
+	private PerstString intern(PerstString value) {
+		if (value != null) {
+			return new PerstString(interner.intern(value.getValue()));
+		}
+		return null;
+	}
+
+	/**
+	 * Reads all elements, so broken elements are found before anything is
+	 * written.
+	 */
+	private <T> List<T> readAll(IPersistentList<T> list) {
+		if (list == null) {
+			return null;
+		}
+		List<T> result = new ArrayList<>();
+		Iterator<T> it = list.iterator();
+		while (it.hasNext()) {
+			result.add(it.next());
+		}
+		return result;
+	}
+}
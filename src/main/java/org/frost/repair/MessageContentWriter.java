@@ -0,0 +1,215 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.List;
+
+import org.garret.perst.Index;
+import org.garret.perst.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Stores repaired messages in the new dbs-file. Perst does not support
+ * concurrent writes, so only one thread may use a writer.
+ */
+public class MessageContentWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(MessageContentWriter.class);
+
+	private final Storage storage;
+	private final CommitScheduler commitScheduler;
+
+	private final Index<PerstString> messageContents;
+	private final Index<PerstString> publicKeys;
+	private final Index<PerstString> signatures;
+	private final Index<PerstAttachments> attachments;
+
+	private Boolean skipExisting = false;
+
+	private RepairMetrics metrics = new RepairMetrics();
+
+	private PerstStringDeduplicator contentDeduplicator;
+	private PerstStringDeduplicator publicKeyDeduplicator;
+	private StringInterner interner;
+
+	public MessageContentWriter(Storage storage, MessageContentStorageRoot messageContentRoot,
+			CommitScheduler commitScheduler) {
+		this.storage = storage;
+		this.commitScheduler = commitScheduler;
+		messageContents = messageContentRoot.getContentByMsgOid();
+		publicKeys = messageContentRoot.getPublickeyByMsgOid();
+		signatures = messageContentRoot.getSignatureByMsgOid();
+		attachments = messageContentRoot.getAttachmentsByMsgOid();
+	}
+
+	/**
+	 * Skips messages that are already in the new dbs-file, e.g. if an existing
+	 * dbs-file is updated.
+	 */
+	public void setSkipExisting(Boolean skipExisting) {
+		this.skipExisting = skipExisting;
+	}
+
+	public void setMetrics(RepairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Messages with the same content share one PerstString, including the empty
+	 * content of messages whose content is broken.
+	 * 
+	 * @see PerstStringDeduplicator
+	 */
+	public void setContentDeduplicator(PerstStringDeduplicator contentDeduplicator) {
+		this.contentDeduplicator = contentDeduplicator;
+	}
+
+	/**
+	 * Messages of the same author share one PerstString for the public key.
+	 * 
+	 * @see PerstStringDeduplicator
+	 */
+	public void setPublicKeyDeduplicator(PerstStringDeduplicator publicKeyDeduplicator) {
+		this.publicKeyDeduplicator = publicKeyDeduplicator;
+	}
+
+	/**
+	 * The strings of the attachments are replaced by cached equal strings while
+	 * they are copied to the new dbs-file.
+	 */
+	public void setInterner(StringInterner interner) {
+		this.interner = interner;
+	}
+
+	public void write(RepairedMessage message) {
+		int oid = message.getOid();
+		if (skipExisting && messageContents.get(oid) != null) {
+			return;
+		}
+		long bytes = 0;
+		long objects = 0;
+
+		PerstString content = null;
+		if (contentDeduplicator != null) {
+			content = contentDeduplicator.find(message.getContent());
+		}
+		if (content != null) {
+			messageContents.put(oid, content);
+			metrics.add(RepairMetrics.SHARED_CONTENTS, 1);
+		} else {
+			messageContents.put(oid, message.getContent());
+			if (contentDeduplicator != null) {
+				contentDeduplicator.add(message.getContent());
+			}
+			bytes = length(message.getContent());
+			objects = 1;
+		}
+		if (message.getPublicKey() != null) {
+			PerstString publicKey = null;
+			if (publicKeyDeduplicator != null) {
+				publicKey = publicKeyDeduplicator.find(message.getPublicKey());
+			}
+			if (publicKey != null) {
+				publicKeys.put(oid, publicKey);
+				metrics.add(RepairMetrics.SHARED_PUBLIC_KEYS, 1);
+			} else {
+				publicKeys.put(oid, message.getPublicKey());
+				if (publicKeyDeduplicator != null) {
+					publicKeyDeduplicator.add(message.getPublicKey());
+				}
+				bytes = bytes + length(message.getPublicKey());
+				objects = objects + 1;
+			}
+		}
+		if (message.getSignature() != null) {
+			signatures.put(oid, message.getSignature());
+			bytes = bytes + length(message.getSignature());
+			objects = objects + 1;
+		}
+		long start = System.nanoTime();
+		if (interner != null) {
+			attachments.put(oid, new PerstAttachments(storage, message.getBoardAttachments(),
+					message.getFileAttachments(), interner::intern));
+		} else {
+			attachments.put(oid,
+					new PerstAttachments(storage, message.getBoardAttachments(), message.getFileAttachments()));
+		}
+		metrics.time(RepairMetrics.ATTACHMENT_COPY, start);
+		objects = objects + 1;
+
+		if (message.getBoardAttachments() != null) {
+			bytes = bytes + boardAttachmentBytes(message.getBoardAttachments());
+			objects = objects + 1 + message.getBoardAttachments().size();
+		}
+		if (message.getFileAttachments() != null) {
+			bytes = bytes + fileAttachmentBytes(message.getFileAttachments());
+			objects = objects + 1 + message.getFileAttachments().size();
+		}
+
+		metrics.add(RepairMetrics.MESSAGES, 1);
+		metrics.add(RepairMetrics.BYTES_WRITTEN, bytes);
+		commitScheduler.written(bytes, objects);
+	}
+
+	/**
+	 * Commits the remaining messages.
+	 */
+	public void finish() {
+		commitScheduler.commit();
+		commitScheduler.logStatistics();
+		if (contentDeduplicator != null) {
+			log.info("Shared the content of {} messages with other messages, saved {} MiB",
+					contentDeduplicator.getReusedCount(), contentDeduplicator.getSavedBytes() / (1024 * 1024));
+		}
+		if (publicKeyDeduplicator != null) {
+			log.info("Shared the public key of {} messages with other messages, saved {} MiB",
+					publicKeyDeduplicator.getReusedCount(), publicKeyDeduplicator.getSavedBytes() / (1024 * 1024));
+		}
+	}
+
+	public static long length(PerstString value) {
+		return length(value.getValue());
+	}
+
+	public static long boardAttachmentBytes(List<PerstBoardAttachment> boardAttachments) {
+		long bytes = 0;
+		for (PerstBoardAttachment attachment : boardAttachments) {
+			bytes = bytes + length(attachment.getName()) + length(attachment.getPubKey())
+					+ length(attachment.getPrivKey()) + length(attachment.getDescription());
+		}
+		return bytes;
+	}
+
+	public static long fileAttachmentBytes(List<PerstFileAttachment> fileAttachments) {
+		long bytes = 0;
+		for (PerstFileAttachment attachment : fileAttachments) {
+			bytes = bytes + length(attachment.getName()) + length(attachment.getCHKKey());
+		}
+		return bytes;
+	}
+
+	private static long length(String value) {
+		return value != null ? value.length() : 0;
+	}
+}
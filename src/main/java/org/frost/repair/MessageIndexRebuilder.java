@@ -0,0 +1,196 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.IPersistent;
+import org.garret.perst.IPersistentList;
+import org.garret.perst.Index;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.MessageStorageRoot;
+import frost.storage.perst.messages.PerstFrostBoardObject;
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Rebuilds the message indexes of all boards in messages.dbs from the messages
+ * that can still be read from any of them. The messages keep their OIDs, so
+ * messagesContents.dbs still matches.
+ */
+public class MessageIndexRebuilder {
+
+	private static final Logger log = LoggerFactory.getLogger(MessageIndexRebuilder.class);
+
+	private final Storage storage;
+
+	public MessageIndexRebuilder(Storage storage) {
+		this.storage = storage;
+	}
+
+	public void rebuild(MessageStorageRoot root) {
+		Iterator<PerstFrostBoardObject> boardIt = root.getBoardsByName().iterator();
+		while (boardIt.hasNext()) {
+			PerstFrostBoardObject board = boardIt.next();
+			log.info("Rebuild message indexes of board {} ...", board.getBoardName());
+			rebuildBoard(board);
+			storage.commit();
+		}
+	}
+
+	private void rebuildBoard(PerstFrostBoardObject board) {
+		String boardName = board.getBoardName();
+		OidSet oids = new OidSet();
+		List<PerstFrostMessageObject> messages = new ArrayList<>();
+		// Only indexes that were read completely are freed
+		Map<String, IPersistent> readableIndexes = new LinkedHashMap<>();
+		readAll(boardName, "messageIndex", board.getMessageIndex(), oids, messages, readableIndexes);
+		readAll(boardName, "invalidMessagesIndex", board.getInvalidMessagesIndex(), oids, messages,
+				readableIndexes);
+		readAll(boardName, "unreadMessageIndex", board.getUnreadMessageIndex(), oids, messages, readableIndexes);
+		readAll(boardName, "flaggedMessageIndex", board.getFlaggedMessageIndex(), oids, messages, readableIndexes);
+		readAll(boardName, "starredMessageIndex", board.getStarredMessageIndex(), oids, messages, readableIndexes);
+		readAll(boardName, "messageIdIndex", board.getMessageIdIndex(), oids, messages, readableIndexes);
+
+		OidSet sentOids = new OidSet();
+		List<PerstFrostMessageObject> sentMessages = new ArrayList<>();
+		readAll(boardName, "sentMessagesList", board.getSentMessagesList(), sentOids, sentMessages,
+				readableIndexes);
+
+		// @see frost.storage.perst.messages.MessageStorage.insertMessage(...)
+		List<PerstFrostMessageObject> validMessages = new ArrayList<>();
+		List<PerstFrostMessageObject> invalidMessages = new ArrayList<>();
+		for (PerstFrostMessageObject message : messages) {
+			if (message.getInvalidReason() != null) {
+				invalidMessages.add(message);
+			} else {
+				validMessages.add(message);
+			}
+		}
+
+		Index<PerstFrostMessageObject> messageIndex = createIndex(long.class, false, validMessages,
+				PerstFrostMessageObject::getDateAndTime);
+		Index<PerstFrostMessageObject> messageIdIndex = createIndex(String.class, true,
+				filter(validMessages, message -> message.getMessageId() != null),
+				PerstFrostMessageObject::getMessageId);
+		Index<PerstFrostMessageObject> unreadMessageIndex = createIndex(long.class, false,
+				filter(validMessages, PerstFrostMessageObject::isNew), PerstFrostMessageObject::getDateAndTime);
+		Index<PerstFrostMessageObject> flaggedMessageIndex = createIndex(long.class, false,
+				filter(validMessages, PerstFrostMessageObject::isFlagged), PerstFrostMessageObject::getDateAndTime);
+		Index<PerstFrostMessageObject> starredMessageIndex = createIndex(long.class, false,
+				filter(validMessages, PerstFrostMessageObject::isStarred), PerstFrostMessageObject::getDateAndTime);
+		Index<PerstFrostMessageObject> invalidMessagesIndex = createIndex(long.class, false, invalidMessages,
+				PerstFrostMessageObject::getDateAndTime);
+
+		IPersistentList<PerstFrostMessageObject> sentMessagesList = storage.createScalableList();
+		sentMessagesList.addAll(sentMessages);
+
+		board.setMessageIndexes(messageIndex, messageIdIndex, unreadMessageIndex, flaggedMessageIndex,
+				starredMessageIndex, invalidMessagesIndex, sentMessagesList);
+		for (Map.Entry<String, IPersistent> oldIndex : readableIndexes.entrySet()) {
+			deallocate(boardName, oldIndex.getKey(), oldIndex.getValue());
+		}
+
+		log.info("Board {}: {} valid, {} invalid and {} sent messages", boardName, validMessages.size(),
+				invalidMessages.size(), sentMessages.size());
+	}
+
+	/**
+	 * Reads the messages of an index until the end or the first broken part.
+	 * 
+	 * @param readableIndexes Gets the index if it was read without error
+	 */
+	private <T extends Iterable<PerstFrostMessageObject> & IPersistent> void readAll(String boardName,
+			String indexName, T index, OidSet oids, List<PerstFrostMessageObject> messages,
+			Map<String, IPersistent> readableIndexes) {
+		if (index == null) {
+			log.warn("Board {}: {} is missing", boardName, indexName);
+			return;
+		}
+		try {
+			Iterator<PerstFrostMessageObject> messageIt = index.iterator();
+			while (messageIt.hasNext()) {
+				PerstFrostMessageObject message = messageIt.next();
+				if (message != null && oids.add(message.getOid())) {
+					messages.add(message);
+				}
+			}
+			readableIndexes.put(indexName, index);
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				// Freeing a broken B-tree may free pages of objects that are still used
+				log.warn("Board {}: {} is broken after {} messages, its pages are kept allocated", boardName,
+						indexName, messages.size());
+			} else {
+				throw e;
+			}
+		}
+	}
+
+	private List<PerstFrostMessageObject> filter(List<PerstFrostMessageObject> messages,
+			Function<PerstFrostMessageObject, Boolean> condition) {
+		List<PerstFrostMessageObject> result = new ArrayList<>();
+		for (PerstFrostMessageObject message : messages) {
+			if (condition.apply(message)) {
+				result.add(message);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Inserts the messages sorted by key, so every insert appends to the last leaf
+	 * page of the B-tree instead of splitting pages all over the tree.
+	 */
+	private <K extends Comparable<K>> Index<PerstFrostMessageObject> createIndex(Class<?> keyType, boolean unique,
+			List<PerstFrostMessageObject> messages, Function<PerstFrostMessageObject, K> key) {
+		List<PerstFrostMessageObject> sorted = new ArrayList<>(messages);
+		sorted.sort(Comparator.comparing(key));
+
+		Index<PerstFrostMessageObject> index = storage.createIndex(keyType, unique);
+		for (PerstFrostMessageObject message : sorted) {
+			index.put(key.apply(message), message);
+		}
+		return index;
+	}
+
+	/**
+	 * Frees the pages of an old index that was read completely. The messages
+	 * themselves are still used.
+	 */
+	private void deallocate(String boardName, String indexName, IPersistent oldIndex) {
+		try {
+			oldIndex.deallocate();
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				log.warn("Board {}: Can't free {}, its remaining pages are kept allocated", boardName, indexName);
+			} else {
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Arrays;
+
+/**
+ * Compact set of OIDs. Like a roaring bitmap, the OIDs are grouped by their
+ * upper 16 bits. A group stores a sorted array of the lower 16 bits while it
+ * is small and switches to a bitmap of 8 KiB when it grows, so millions of
+ * OIDs need only a few bytes each.
+ */
+public class OidSet {
+
+	private static final Integer ARRAY_LIMIT = 4096;
+	private static final Integer BITMAP_WORDS = 1 << 10;
+
+	private Container[] containers = new Container[0];
+	private long size;
+
+	/**
+	 * @return false if the OID was already in the set
+	 */
+	public synchronized boolean add(int oid) {
+		int high = oid >>> 16;
+		if (high >= containers.length) {
+			containers = Arrays.copyOf(containers, high + 1);
+		}
+		Container container = containers[high];
+		if (container == null) {
+			container = new Container();
+			containers[high] = container;
+		}
+		boolean added = container.add((char) oid);
+		if (added) {
+			size = size + 1;
+		}
+		return added;
+	}
+
+	public synchronized boolean contains(int oid) {
+		int high = oid >>> 16;
+		if (high >= containers.length || containers[high] == null) {
+			return false;
+		}
+		return containers[high].contains((char) oid);
+	}
+
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * @return All OIDs in ascending order
+	 */
+	public synchronized int[] toArray() {
+		int[] result = new int[Math.toIntExact(size)];
+		int pos = 0;
+		for (int high = 0; high < containers.length; high++) {
+			if (containers[high] != null) {
+				pos = containers[high].copyTo(result, pos, high << 16);
+			}
+		}
+		return result;
+	}
+
+	private static class Container {
+
+		private char[] values = new char[4];
+		private int count;
+		private long[] bitmap;
+
+		private boolean add(char value) {
+			if (bitmap != null) {
+				long mask = 1L << value;
+				int word = value >>> 6;
+				if ((bitmap[word] & mask) != 0) {
+					return false;
+				}
+				bitmap[word] = bitmap[word] | mask;
+				return true;
+			}
+
+			int pos = Arrays.binarySearch(values, 0, count, value);
+			if (pos >= 0) {
+				return false;
+			}
+			if (count >= ARRAY_LIMIT) {
+				toBitmap();
+				return add(value);
+			}
+			pos = -pos - 1;
+			if (count == values.length) {
+				values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_LIMIT));
+			}
+			System.arraycopy(values, pos, values, pos + 1, count - pos);
+			values[pos] = value;
+			count = count + 1;
+			return true;
+		}
+
+		private boolean contains(char value) {
+			if (bitmap != null) {
+				return (bitmap[value >>> 6] & (1L << value)) != 0;
+			}
+			return Arrays.binarySearch(values, 0, count, value) >= 0;
+		}
+
+		private int copyTo(int[] result, int pos, int high) {
+			if (bitmap != null) {
+				for (int word = 0; word < bitmap.length; word++) {
+					long bits = bitmap[word];
+					while (bits != 0) {
+						int bit = Long.numberOfTrailingZeros(bits);
+						result[pos++] = high | (word << 6) | bit;
+						bits = bits & (bits - 1);
+					}
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					result[pos++] = high | values[i];
+				}
+			}
+			return pos;
+		}
+
+		private void toBitmap() {
+			bitmap = new long[BITMAP_WORDS];
+			for (int i = 0; i < count; i++) {
+				char value = values[i];
+				bitmap[value >>> 6] = bitmap[value >>> 6] | (1L << value);
+			}
+			values = null;
+			count = 0;
+		}
+	}
+}
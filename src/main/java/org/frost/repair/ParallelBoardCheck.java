@@ -0,0 +1,88 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.PerstFrostBoardObject;
+
+/**
+ * Reads all messages of several boards at the same time, but only counts their
+ * broken parts. Nothing is written, so unlike ParallelBoardRepair no thread
+ * has to collect the messages.
+ */
+public class ParallelBoardCheck {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelBoardCheck.class);
+
+	private final BoardReader boardReader;
+	private final Integer threads;
+
+	public ParallelBoardCheck(BoardReader boardReader, Integer threads) {
+		this.boardReader = boardReader;
+		this.threads = threads;
+	}
+
+	/**
+	 * @return Counts of all boards
+	 */
+	public BoardStatistics check(List<PerstFrostBoardObject> boards) throws IOException {
+		BoardStatistics total = new BoardStatistics(null);
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			CompletionService<BoardStatistics> results = new ExecutorCompletionService<>(workers);
+			for (PerstFrostBoardObject board : boards) {
+				results.submit(() -> boardReader.readBoard(board, message -> {
+				}));
+			}
+			for (Integer finishedBoards = 1; finishedBoards <= boards.size(); finishedBoards++) {
+				BoardStatistics statistics = results.take().get();
+				total.add(statistics);
+				log.info("Checked {} ({} of {})", statistics, finishedBoards, boards.size());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Check was interrupted!");
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		} finally {
+			workers.shutdownNow();
+		}
+		return total;
+	}
+
+	private IOException rethrow(Throwable error) throws IOException {
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		}
+		return new IOException("Can't check board!", error);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.PerstFrostBoardObject;
+
+/**
+ * Reads several boards at the same time with a pool of workers. The workers
+ * only read from the old dbs-file and hand their messages in batches to the
+ * calling thread, which is the only one passing them to the sink, e.g. the
+ * writer of the new dbs-file.
+ */
+public class ParallelBoardRepair {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelBoardRepair.class);
+
+	private static final Integer BATCH_SIZE = 1000;
+	private static final Integer BATCHES_PER_THREAD = 4;
+
+	private final BoardReader boardReader;
+	private final Integer threads;
+
+	public ParallelBoardRepair(BoardReader boardReader, Integer threads) {
+		this.boardReader = boardReader;
+		this.threads = threads;
+	}
+
+	public void repair(List<PerstFrostBoardObject> boards, MessageSink sink) throws IOException {
+		BlockingQueue<MessageBatch> queue = new ArrayBlockingQueue<>(threads * BATCHES_PER_THREAD);
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			for (PerstFrostBoardObject board : boards) {
+				workers.execute(() -> readBoard(board, queue));
+			}
+
+			Integer finishedBoards = 0;
+			while (finishedBoards < boards.size()) {
+				MessageBatch batch = queue.take();
+				if (batch.error != null) {
+					throw rethrow(batch.boardName, batch.error);
+				}
+				for (RepairedMessage message : batch.messages) {
+					sink.accept(message);
+				}
+				if (batch.last) {
+					finishedBoards = finishedBoards + 1;
+					log.info("Copied {} ({} of {})", batch.statistics, finishedBoards, boards.size());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Repair was interrupted!");
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	private void readBoard(PerstFrostBoardObject board, BlockingQueue<MessageBatch> queue) {
+		String boardName = board.getBoardName();
+		try {
+			log.info("Copy message-contents from board {} ...", boardName);
+			BatchingSink sink = new BatchingSink(boardName, queue);
+			BoardStatistics statistics = boardReader.readBoard(board, sink);
+			sink.finish(statistics);
+		} catch (InterruptedIOException e) {
+			// Writer has stopped, nobody waits for this board
+		} catch (Throwable e) {
+			MessageBatch batch = new MessageBatch(boardName);
+			batch.error = e;
+			try {
+				queue.put(batch);
+			} catch (InterruptedException e2) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private IOException rethrow(String boardName, Throwable error) throws IOException {
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		}
+		return new IOException(String.format("Can't read board \"%s\"!", boardName), error);
+	}
+
+	private static class BatchingSink implements MessageSink {
+
+		private final String boardName;
+		private final BlockingQueue<MessageBatch> queue;
+		private MessageBatch batch;
+
+		private BatchingSink(String boardName, BlockingQueue<MessageBatch> queue) {
+			this.boardName = boardName;
+			this.queue = queue;
+			batch = new MessageBatch(boardName);
+		}
+
+		@Override
+		public void accept(RepairedMessage message) throws IOException {
+			batch.messages.add(message);
+			if (batch.messages.size() >= BATCH_SIZE) {
+				put(batch);
+				batch = new MessageBatch(boardName);
+			}
+		}
+
+		private void finish(BoardStatistics statistics) throws IOException {
+			batch.last = true;
+			batch.statistics = statistics;
+			put(batch);
+		}
+
+		private void put(MessageBatch full) throws InterruptedIOException {
+			try {
+				queue.put(full);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+	}
+
+	private static class MessageBatch {
+
+		private final String boardName;
+		private final List<RepairedMessage> messages = new ArrayList<>();
+		private Boolean last = false;
+		private BoardStatistics statistics;
+		private Throwable error;
+
+		private MessageBatch(String boardName) {
+			this.boardName = boardName;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.IFile;
+import org.garret.perst.Index;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to the object index of a storage and the headers of its objects,
+ * without loading any object. These internals of Perst are only reachable via
+ * reflection, so they may be missing in another version of Perst.
+ */
+public class PerstInternals {
+
+	private static final Logger log = LoggerFactory.getLogger(PerstInternals.class);
+
+	// @see org.garret.perst.impl.StorageImpl
+	private static final long FREE_HANDLE_FLAG = 1;
+	private static final long PAGE_OBJECT_FLAG = 4;
+	private static final long FLAGS_MASK = 7;
+
+	// @see org.garret.perst.impl.ObjectHeader
+	private static final Integer HEADER_SIZE = 8;
+
+	// Entries used to find the class of the values of an index
+	private static final Integer SAMPLE_SIZE = 1000;
+
+	private final Storage storage;
+	private final Method getPos;
+	private final Field currIndexSize;
+	private final IFile file;
+	private final long fileSize;
+
+	private final byte[] header = new byte[HEADER_SIZE];
+
+	private final Map<Class<?>, Field> oidFields = new HashMap<>();
+
+	private PerstInternals(Storage storage, Method getPos, Field currIndexSize, IFile file) {
+		this.storage = storage;
+		this.getPos = getPos;
+		this.currIndexSize = currIndexSize;
+		this.file = file;
+		this.fileSize = file.length();
+	}
+
+	/**
+	 * @return null if this version of Perst is not supported
+	 */
+	public static PerstInternals create(Storage storage) {
+		try {
+			Class<?> storageClass = storage.getClass();
+			return new PerstInternals(storage, findMethod(storageClass, "getPos", int.class),
+					findField(storageClass, "currIndexSize"), (IFile) findField(storageClass, "file").get(storage));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.warn("Internals of this version of Perst are not supported", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Fields and methods may be declared by a superclass, e.g. if a subclass of
+	 * StorageImpl is used.
+	 */
+	private static Field findField(Class<?> type, String name) throws NoSuchFieldException {
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			try {
+				Field field = current.getDeclaredField(name);
+				field.setAccessible(true);
+				return field;
+			} catch (NoSuchFieldException e) {
+				// Try the superclass
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+
+	private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes)
+			throws NoSuchMethodException {
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			try {
+				Method method = current.getDeclaredMethod(name, parameterTypes);
+				method.setAccessible(true);
+				return method;
+			} catch (NoSuchMethodException e) {
+				// Try the superclass
+			}
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	/**
+	 * The entries of Perst load their value only on request and keep its OID in
+	 * a private field.
+	 * 
+	 * @throws IllegalStateException if the entry has no OID
+	 */
+	public int getValueOid(Map.Entry<?, ?> entry) {
+		try {
+			Field oid = oidFields.get(entry.getClass());
+			if (oid == null) {
+				oid = findField(entry.getClass(), "oid");
+				oidFields.put(entry.getClass(), oid);
+			}
+			return oid.getInt(entry);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Entry of Perst has no OID", e);
+		}
+	}
+
+	/**
+	 * Number of OIDs in the object index, all valid OIDs are smaller.
+	 */
+	public int getIndexSize() {
+		try {
+			return currIndexSize.getInt(storage);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private long getPos(int oid) {
+		try {
+			return (Long) getPos.invoke(storage, oid);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks the object index and the header of an object.
+	 * 
+	 * @param expectedType OID of the class descriptor or null to skip this check
+	 * @return Reason or null if the object looks fine
+	 */
+	public KnownBrokenOids.Reason check(int oid, Integer expectedType) {
+		int indexSize = getIndexSize();
+		if (oid <= 0 || oid >= indexSize) {
+			return KnownBrokenOids.Reason.INVALID_OID;
+		}
+		long pos = getPos(oid);
+		if ((pos & FREE_HANDLE_FLAG) != 0) {
+			return KnownBrokenOids.Reason.DELETED_OBJECT;
+		}
+		long offset = pos & ~FLAGS_MASK;
+		if ((pos & PAGE_OBJECT_FLAG) != 0 || offset == 0) {
+			return KnownBrokenOids.Reason.UNEXPECTED_CLASS;
+		}
+		if (offset + HEADER_SIZE > fileSize || file.read(offset, header) < HEADER_SIZE) {
+			return KnownBrokenOids.Reason.BROKEN_HEADER;
+		}
+		int size = getInt(header, 0);
+		int type = getInt(header, 4);
+		if (size < HEADER_SIZE || offset + size > fileSize || type <= 0 || type >= indexSize) {
+			return KnownBrokenOids.Reason.BROKEN_HEADER;
+		}
+		if (expectedType != null && type != expectedType) {
+			return KnownBrokenOids.Reason.UNEXPECTED_CLASS;
+		}
+		return null;
+	}
+
+	/**
+	 * @return OID of the class descriptor of a valid object, see check(...)
+	 */
+	public Integer getType(int oid) {
+		file.read(getPos(oid) & ~FLAGS_MASK, header);
+		return getInt(header, 4);
+	}
+
+	/**
+	 * All values of an index have the same class, so the most common class of the
+	 * first entries is expected for all entries.
+	 * 
+	 * @return OID of the class descriptor or null if unknown
+	 */
+	public <T> Integer findExpectedType(Index<T> index) {
+		Map<Integer, Integer> typeCounts = new HashMap<>();
+		try {
+			Iterator<Map.Entry<Object, T>> entryIt = index.entryIterator();
+			for (int i = 0; i < SAMPLE_SIZE && entryIt.hasNext(); i++) {
+				int oid = getValueOid(entryIt.next());
+				if (check(oid, null) == null) {
+					typeCounts.merge(getType(oid), 1, Integer::sum);
+				}
+			}
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (!MessageContentReader.isKnownError(e)) {
+				throw e;
+			}
+		}
+		Integer expectedType = null;
+		Integer maxCount = 0;
+		for (Map.Entry<Integer, Integer> typeCount : typeCounts.entrySet()) {
+			if (typeCount.getValue() > maxCount) {
+				expectedType = typeCount.getKey();
+				maxCount = typeCount.getValue();
+			}
+		}
+		return expectedType;
+	}
+
+	/**
+	 * Perst stores numbers in big-endian order.
+	 * 
+	 * @see org.garret.perst.impl.Bytes#unpack4(byte[], int)
+	 */
+	private static int getInt(byte[] data, int offset) {
+		return (data[offset] << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8)
+				| (data[offset + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,149 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+
+import frost.storage.perst.PerstString;
+
+/**
+ * Finds PerstStrings in the new dbs-file with the same value, so several
+ * messages can share one object instead of storing the same text again, e.g.
+ * for spam floods. The values are remembered by their fingerprint and the OID
+ * of the stored object. The fingerprint may collide, so every hit is compared
+ * with the stored value.
+ * <p>
+ * Frost deallocates the content and public key of a message when it deletes
+ * the message. It does not know that the object may be shared, so deleting a
+ * message in Frost breaks all messages with the same value.
+ * <p>
+ * Only one thread may use a deduplicator.
+ */
+public class PerstStringDeduplicator {
+
+	private static final Integer INITIAL_CAPACITY = 1 << 16;
+	private static final Double MAX_LOAD = 0.5;
+
+	// Marks an empty slot, fingerprints are never 0
+	private static final long EMPTY = 0;
+
+	private final Storage storage;
+
+	private long[] fingerprints = new long[INITIAL_CAPACITY];
+	private int[] oids = new int[INITIAL_CAPACITY];
+	private Integer size = 0;
+
+	private long reusedCount;
+	private long savedBytes;
+
+	public PerstStringDeduplicator(Storage storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 * @return Stored PerstString with the same value or null if there is none
+	 */
+	public PerstString find(PerstString value) {
+		if (value.getValue() == null) {
+			return null;
+		}
+		long fingerprint = FingerprintSet.fingerprint(value.getValue());
+		int slot = findSlot(fingerprints, fingerprint);
+		if (fingerprints[slot] == EMPTY) {
+			return null;
+		}
+		PerstString stored = load(oids[slot]);
+		if (stored == null || !value.getValue().equals(stored.getValue())) {
+			return null;
+		}
+		reusedCount = reusedCount + 1;
+		savedBytes = savedBytes + MessageContentWriter.length(value);
+		return stored;
+	}
+
+	/**
+	 * Remembers a PerstString that was just stored. A value with the same
+	 * fingerprint that was stored before is kept.
+	 */
+	public void add(PerstString stored) {
+		if (stored.getValue() == null) {
+			return;
+		}
+		long fingerprint = FingerprintSet.fingerprint(stored.getValue());
+		int slot = findSlot(fingerprints, fingerprint);
+		if (fingerprints[slot] != EMPTY) {
+			return;
+		}
+		fingerprints[slot] = fingerprint;
+		oids[slot] = stored.getOid();
+		size = size + 1;
+		if (size > fingerprints.length * MAX_LOAD) {
+			grow();
+		}
+	}
+
+	/**
+	 * Number of PerstStrings that were reused instead of stored again.
+	 */
+	public long getReusedCount() {
+		return reusedCount;
+	}
+
+	/**
+	 * Bytes that were not stored again, counted like the written bytes.
+	 */
+	public long getSavedBytes() {
+		return savedBytes;
+	}
+
+	private PerstString load(int oid) {
+		try {
+			Object stored = storage.getObjectByOID(oid);
+			return stored instanceof PerstString ? (PerstString) stored : null;
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	private static int findSlot(long[] table, long fingerprint) {
+		int mask = table.length - 1;
+		int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+		while (table[slot] != EMPTY && table[slot] != fingerprint) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldFingerprints = fingerprints;
+		int[] oldOids = oids;
+		fingerprints = new long[oldFingerprints.length * 2];
+		oids = new int[oldOids.length * 2];
+		for (int i = 0; i < oldFingerprints.length; i++) {
+			if (oldFingerprints[i] != EMPTY) {
+				int slot = findSlot(fingerprints, oldFingerprints[i]);
+				fingerprints[slot] = oldFingerprints[i];
+				oids[slot] = oldOids[i];
+			}
+		}
+	}
+}
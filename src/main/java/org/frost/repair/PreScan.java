@@ -0,0 +1,100 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Index;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.MessageContentStorageRoot;
+
+/**
+ * Finds broken values of the message-content indexes without loading them.
+ * Every entry of an index holds the OID of its value, which is checked against
+ * the object index of the storage and the header of the object. The class of
+ * the object is not checked: Perst adds a class descriptor whenever a class
+ * changes, so values written by an older Frost are still readable. The rare
+ * values of another class are left to the lookups. If the internals of Perst
+ * are missing, e.g. in another version of Perst, nothing is found and the
+ * repair falls back to the lookups.
+ */
+public class PreScan {
+
+	private static final Logger log = LoggerFactory.getLogger(PreScan.class);
+
+	private final PerstInternals internals;
+
+	public PreScan(Storage storage) {
+		internals = PerstInternals.create(storage);
+	}
+
+	public Boolean isSupported() {
+		return internals != null;
+	}
+
+	public KnownBrokenOids scan(MessageContentStorageRoot root) {
+		KnownBrokenOids result = new KnownBrokenOids();
+		if (!isSupported()) {
+			return result;
+		}
+		try {
+			scanIndex(MessageContentReader.CONTENT, root.getContentByMsgOid(), result);
+			scanIndex(MessageContentReader.PUBLIC_KEY, root.getPublickeyByMsgOid(), result);
+			scanIndex(MessageContentReader.SIGNATURE, root.getSignatureByMsgOid(), result);
+			scanIndex(MessageContentReader.ATTACHMENTS, root.getAttachmentsByMsgOid(), result);
+		} catch (IllegalStateException e) {
+			log.warn("Pre-scan is not supported by this version of Perst", e);
+		}
+		// Broken indexes may return keys out of order or more than once
+		long duplicates = result.sort();
+		if (duplicates > 0) {
+			log.warn("Pre-scan found {} keys more than once", duplicates);
+		}
+		return result;
+	}
+
+	private <T> void scanIndex(String part, Index<T> index, KnownBrokenOids result) {
+		long start = System.nanoTime();
+		Integer count = 0;
+		try {
+			Iterator<Map.Entry<Object, T>> entryIt = index.entryIterator();
+			while (entryIt.hasNext()) {
+				Map.Entry<Object, T> entry = entryIt.next();
+				KnownBrokenOids.Reason reason = internals.check(internals.getValueOid(entry), null);
+				if (reason != null) {
+					result.add(part, (Integer) entry.getKey(), reason);
+				}
+				count = count + 1;
+			}
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			// The lookups will find the rest
+			if (MessageContentReader.isKnownError(e)) {
+				log.warn("Index of {} is broken, pre-scan stopped after {} entries", part, count);
+			} else {
+				throw e;
+			}
+		}
+		log.info("Pre-scan of {}: {} of {} entries are broken ({} ms)", part, result.size(part), count,
+				(System.nanoTime() - start) / 1000000);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs percent complete, rate and ETA at a fixed interval. Runs on its own
+ * thread and only reads counters that are updated anyway, so the repair does
+ * no extra work for it.
+ */
+public class ProgressReporter {
+
+	private static final Logger log = LoggerFactory.getLogger(ProgressReporter.class);
+
+	// Weight of the latest interval in the smoothed rate
+	private static final Double SMOOTHING = 0.3;
+
+	private final Long total;
+	private final LongSupplier done;
+	private final Long intervalSeconds;
+
+	private ScheduledExecutorService executor;
+
+	private long lastDone;
+	private long lastTime;
+	private Double smoothedRate;
+
+	/**
+	 * @param done Number of messages that are done, called from the reporter
+	 *             thread
+	 */
+	public ProgressReporter(Long total, LongSupplier done, Long intervalSeconds) {
+		this.total = total;
+		this.done = done;
+		this.intervalSeconds = intervalSeconds;
+	}
+
+	public void start() {
+		lastDone = done.getAsLong();
+		lastTime = System.nanoTime();
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private void report() {
+		try {
+			long now = System.nanoTime();
+			long current = done.getAsLong();
+			double seconds = (now - lastTime) / 1e9;
+			double rate = seconds > 0 ? (current - lastDone) / seconds : 0;
+			if (smoothedRate == null) {
+				smoothedRate = rate;
+			} else {
+				smoothedRate = SMOOTHING * rate + (1 - SMOOTHING) * smoothedRate;
+			}
+			lastDone = current;
+			lastTime = now;
+
+			long remaining = Math.max(0, total - current);
+			String eta = smoothedRate > 0 ? formatDuration((long) (remaining / smoothedRate)) : "unknown";
+			log.info("Progress: {}% ({} of {} messages), {} messages/s, ETA {}",
+					String.format("%.1f", total > 0 ? Math.min(100.0, current * 100.0 / total) : 100.0), current,
+					total, String.format("%.0f", rate), eta);
+		} catch (RuntimeException e) {
+			// An exception would cancel all further reports
+			log.debug("Can't report progress", e);
+		}
+	}
+
+	private static String formatDuration(long seconds) {
+		return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+}
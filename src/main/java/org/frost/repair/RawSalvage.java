@@ -0,0 +1,301 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Index;
+import org.garret.perst.Key;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.MessageContentStorageRoot;
+import frost.storage.perst.messages.PerstAttachments;
+
+/**
+ * Finds message-contents, public keys, signatures and attachments that can't be
+ * reached via their index, e.g. because a page of the B-tree is broken. The
+ * dbs-file is memory-mapped and scanned page by page for leaf pages of the
+ * int-indexes. Their entries still hold the message OID as key and the OID of
+ * the value, which is loaded by its OID instead of the index.
+ * <p>
+ * The four indexes of messagesContents.dbs use the same keys and three of them
+ * hold PerstStrings, so a found page is assigned to one of these indexes only
+ * if the other two disagree with it. Pages that can't be assigned are skipped
+ * and counted, e.g. pages of unsigned messages. Pages that can still be reached
+ * via their index are skipped, as are old copies of pages that disagree with
+ * their index.
+ */
+public class RawSalvage {
+
+	private static final Logger log = LoggerFactory.getLogger(RawSalvage.class);
+
+	// @see org.garret.perst.impl.BtreePage
+	private static final Integer PAGE_SIZE = 4096;
+	private static final Integer FIRST_KEY_OFFSET = 4;
+	private static final Integer MAX_INT_ITEMS = (PAGE_SIZE - FIRST_KEY_OFFSET) / 8;
+
+	private static final Long CHUNK_SIZE = 256L * 1024L * 1024L;
+
+	// Entries of a page that are compared with the indexes
+	private static final Integer SAMPLE_SIZE = 8;
+
+	private final Storage storage;
+	private final Path filename;
+	private final MessageContentStorageRoot root;
+
+	private PerstInternals internals;
+	private Integer stringType;
+	private Integer attachmentsType;
+
+	private final OidPairs contentPairs = new OidPairs();
+	private final OidPairs publicKeyPairs = new OidPairs();
+	private final OidPairs signaturePairs = new OidPairs();
+	private final OidPairs attachmentPairs = new OidPairs();
+	private long leafPages;
+	private long salvagedPages;
+	private long ambiguousPages;
+
+	/**
+	 * Growing list of key and value, packed into a long, so it can be sorted by
+	 * key.
+	 */
+	private static class OidPairs {
+		private long[] pairs = new long[1024];
+		private int size;
+
+		private void add(int key, int value) {
+			if (size == pairs.length) {
+				pairs = Arrays.copyOf(pairs, size * 2);
+			}
+			pairs[size] = ((long) key << 32) | (value & 0xFFFFFFFFL);
+			size = size + 1;
+		}
+	}
+
+	/**
+	 * @param filename dbs-file of the storage, it is only read
+	 */
+	public RawSalvage(Storage storage, Path filename, MessageContentStorageRoot root) {
+		this.storage = storage;
+		this.filename = filename;
+		this.root = root;
+	}
+
+	public SalvagedOids scan() throws IOException {
+		SalvagedOids result = new SalvagedOids(storage);
+		internals = PerstInternals.create(storage);
+		if (internals == null) {
+			return result;
+		}
+		try {
+			stringType = internals.findExpectedType(root.getContentByMsgOid());
+			attachmentsType = internals.findExpectedType(root.getAttachmentsByMsgOid());
+			if (stringType == null) {
+				log.warn("No readable message-content found, can't salvage");
+				return result;
+			}
+
+			long start = System.nanoTime();
+			try (FileChannel channel = FileChannel.open(filename, StandardOpenOption.READ)) {
+				long size = channel.size();
+				for (long position = 0; position < size; position = position + CHUNK_SIZE) {
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+							Math.min(CHUNK_SIZE, size - position));
+					for (int offset = 0; offset + PAGE_SIZE <= buffer.limit(); offset = offset + PAGE_SIZE) {
+						scanPage(buffer, offset);
+					}
+				}
+			}
+			addPairs(result, MessageContentReader.CONTENT, PerstString.class, contentPairs);
+			addPairs(result, MessageContentReader.PUBLIC_KEY, PerstString.class, publicKeyPairs);
+			addPairs(result, MessageContentReader.SIGNATURE, PerstString.class, signaturePairs);
+			addPairs(result, MessageContentReader.ATTACHMENTS, PerstAttachments.class, attachmentPairs);
+			log.info("Salvage found {} message-contents, {} public keys, {} signatures and {} attachments in {} "
+					+ "unreachable of {} leaf pages ({} ms)", result.size(MessageContentReader.CONTENT),
+					result.size(MessageContentReader.PUBLIC_KEY), result.size(MessageContentReader.SIGNATURE),
+					result.size(MessageContentReader.ATTACHMENTS), salvagedPages, leafPages,
+					(System.nanoTime() - start) / 1000000);
+			if (ambiguousPages > 0) {
+				log.warn("Salvage skipped {} unreachable pages of message-contents, public keys or signatures, "
+						+ "because it is unknown to which index they belong", ambiguousPages);
+			}
+		} catch (IllegalStateException e) {
+			log.warn("Salvage is not supported by this version of Perst", e);
+		}
+		return result;
+	}
+
+	private void scanPage(MappedByteBuffer buffer, int offset) {
+		int itemCount = buffer.getShort(offset) & 0xFFFF;
+		if (itemCount < 1 || itemCount > MAX_INT_ITEMS || buffer.getShort(offset + 2) != 0) {
+			return;
+		}
+		int indexSize = internals.getIndexSize();
+		int[] keys = new int[itemCount];
+		int[] values = new int[itemCount];
+		for (int i = 0; i < itemCount; i++) {
+			keys[i] = buffer.getInt(offset + FIRST_KEY_OFFSET + i * 4);
+			// References are stored from the end of the page
+			values[i] = buffer.getInt(offset + PAGE_SIZE - 4 - i * 4);
+			if ((i > 0 && keys[i] <= keys[i - 1]) || keys[i] <= 0 || values[i] <= 0 || values[i] >= indexSize) {
+				return;
+			}
+		}
+
+		// Inner pages reference pages, leaf pages reference the values
+		if (internals.check(values[0], null) != null) {
+			return;
+		}
+		Integer type = internals.getType(values[0]);
+		if (type.equals(stringType)) {
+			leafPages = leafPages + 1;
+			OidPairs pairs = findStringPairs(keys, values);
+			if (pairs != null) {
+				salvagedPages = salvagedPages + 1;
+				addValidPairs(pairs, keys, values, type);
+			}
+		} else if (type.equals(attachmentsType)) {
+			leafPages = leafPages + 1;
+			if (isUnreachablePage(root.getAttachmentsByMsgOid(), keys, values)) {
+				salvagedPages = salvagedPages + 1;
+				addValidPairs(attachmentPairs, keys, values, type);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the index does not reach and does not disagree with the
+	 *         samples of the page
+	 */
+	private <T> Boolean isUnreachablePage(Index<T> index, int[] keys, int[] values) {
+		int step = Math.max(1, keys.length / SAMPLE_SIZE);
+		for (int i = 0; i < keys.length; i = i + step) {
+			int oid = lookupOid(index, keys[i]);
+			if (oid > 0) {
+				// Reachable if equal, an old copy of the page if different
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Assigns an unreachable page of PerstStrings to the one index that does not
+	 * disagree with its samples. An index disagrees if it holds another value for
+	 * the key, e.g. all three indexes for an old copy of a page.
+	 * 
+	 * @return Pairs of the index or null if the page is reachable, an old copy or
+	 *         ambiguous
+	 */
+	private OidPairs findStringPairs(int[] keys, int[] values) {
+		Boolean content = true;
+		Boolean publicKey = true;
+		Boolean signature = true;
+		int step = Math.max(1, keys.length / SAMPLE_SIZE);
+		for (int i = 0; i < keys.length; i = i + step) {
+			int contentOid = lookupOid(root.getContentByMsgOid(), keys[i]);
+			int publicKeyOid = lookupOid(root.getPublickeyByMsgOid(), keys[i]);
+			int signatureOid = lookupOid(root.getSignatureByMsgOid(), keys[i]);
+			if (contentOid == values[i] || publicKeyOid == values[i] || signatureOid == values[i]) {
+				return null;
+			}
+			content = content && contentOid <= 0;
+			publicKey = publicKey && publicKeyOid <= 0;
+			signature = signature && signatureOid <= 0;
+		}
+		Integer candidates = (content ? 1 : 0) + (publicKey ? 1 : 0) + (signature ? 1 : 0);
+		if (candidates > 1) {
+			// E.g. a page of unsigned messages could belong to any of the indexes
+			ambiguousPages = ambiguousPages + 1;
+			return null;
+		} else if (content) {
+			return contentPairs;
+		} else if (publicKey) {
+			return publicKeyPairs;
+		} else if (signature) {
+			return signaturePairs;
+		}
+		return null;
+	}
+
+	/**
+	 * @return OID of the value, 0 if the key is missing or -1 if the index is
+	 *         broken
+	 */
+	private <T> int lookupOid(Index<T> index, int key) {
+		try {
+			Iterator<Map.Entry<Object, T>> entryIt = index.entryIterator(new Key(key), new Key(key),
+					Index.ASCENT_ORDER);
+			return entryIt.hasNext() ? internals.getValueOid(entryIt.next()) : 0;
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				return -1;
+			}
+			throw e;
+		}
+	}
+
+	private void addValidPairs(OidPairs pairs, int[] keys, int[] values, Integer type) {
+		for (int i = 0; i < keys.length; i++) {
+			if (internals.check(values[i], type) == null) {
+				pairs.add(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Old copies of a page may hold other values for the same key. These keys are
+	 * dropped, because it is unknown which value is current.
+	 */
+	private void addPairs(SalvagedOids result, String part, Class<?> valueClass, OidPairs pairs) {
+		long[] sorted = Arrays.copyOf(pairs.pairs, pairs.size);
+		Arrays.sort(sorted);
+		int[] keys = new int[sorted.length];
+		int[] values = new int[sorted.length];
+		int count = 0;
+		int i = 0;
+		while (i < sorted.length) {
+			int key = (int) (sorted[i] >>> 32);
+			int value = (int) sorted[i];
+			int next = i + 1;
+			Boolean conflict = false;
+			while (next < sorted.length && (int) (sorted[next] >>> 32) == key) {
+				conflict = conflict || (int) sorted[next] != value;
+				next = next + 1;
+			}
+			if (!conflict) {
+				keys[count] = key;
+				values[count] = value;
+				count = count + 1;
+			}
+			i = next;
+		}
+		result.add(part, valueClass, Arrays.copyOf(keys, count), Arrays.copyOf(values, count));
+	}
+}
@@ -0,0 +1,150 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.garret.perst.IFile;
+import org.garret.perst.StorageError;
+
+/**
+ * Opens a dbs-file without modifying it. Perst writes to a file even if only
+ * reading from it, e.g. the header on open and close or the recovery of a file
+ * that was not closed properly. These writes are kept in memory and returned
+ * by later reads, so the original file is never touched.
+ */
+public class ReadOnlyFile implements IFile {
+
+	private static final Integer PAGE_SIZE = 4096;
+
+	private final FileChannel channel;
+	private final long fileLength;
+
+	private final Map<Long, byte[]> modifiedPages = new ConcurrentHashMap<>();
+	private volatile long length;
+
+	public ReadOnlyFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		fileLength = channel.size();
+		length = fileLength;
+	}
+
+	@Override
+	public synchronized void write(long pos, byte[] buf) {
+		int offset = 0;
+		while (offset < buf.length) {
+			long pageNumber = (pos + offset) / PAGE_SIZE;
+			int pageOffset = (int) ((pos + offset) % PAGE_SIZE);
+			int count = Math.min(buf.length - offset, PAGE_SIZE - pageOffset);
+
+			byte[] page = modifiedPages.get(pageNumber);
+			if (page == null) {
+				page = new byte[PAGE_SIZE];
+				readFromFile(pageNumber * PAGE_SIZE, page, 0, PAGE_SIZE);
+				System.arraycopy(buf, offset, page, pageOffset, count);
+				modifiedPages.put(pageNumber, page);
+			} else {
+				System.arraycopy(buf, offset, page, pageOffset, count);
+			}
+			offset = offset + count;
+		}
+		length = Math.max(length, pos + buf.length);
+	}
+
+	@Override
+	public int read(long pos, byte[] buf) {
+		if (pos >= length) {
+			return 0;
+		}
+		int total = (int) Math.min(buf.length, length - pos);
+		int offset = 0;
+		while (offset < total) {
+			long pageNumber = (pos + offset) / PAGE_SIZE;
+			int pageOffset = (int) ((pos + offset) % PAGE_SIZE);
+			int count = Math.min(total - offset, PAGE_SIZE - pageOffset);
+
+			byte[] page = modifiedPages.get(pageNumber);
+			if (page != null) {
+				System.arraycopy(page, pageOffset, buf, offset, count);
+			} else {
+				readFromFile(pos + offset, buf, offset, count);
+			}
+			offset = offset + count;
+		}
+		return total;
+	}
+
+	/**
+	 * Reads from the original file. Bytes behind its end are zero.
+	 */
+	private void readFromFile(long pos, byte[] buf, int offset, int count) {
+		ByteBuffer buffer = ByteBuffer.wrap(buf, offset, count);
+		try {
+			long current = pos;
+			while (buffer.hasRemaining() && current < fileLength) {
+				int read = channel.read(buffer, current);
+				if (read < 0) {
+					break;
+				}
+				current = current + read;
+			}
+		} catch (IOException e) {
+			throw new StorageError(StorageError.FILE_ACCESS_ERROR, e);
+		}
+		while (buffer.hasRemaining()) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	@Override
+	public void sync() {
+	}
+
+	@Override
+	public boolean tryLock(boolean shared) {
+		return true;
+	}
+
+	@Override
+	public void lock(boolean shared) {
+	}
+
+	@Override
+	public void unlock() {
+	}
+
+	@Override
+	public synchronized void close() {
+		modifiedPages.clear();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new StorageError(StorageError.FILE_ACCESS_ERROR, e);
+		}
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters, timers and the latency of messages per board. Published via JMX
+ * while the repair runs and saved as JSON at the end. All methods may be called
+ * from several threads.
+ */
+public class RepairMetrics implements RepairMetricsMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(RepairMetrics.class);
+
+	private static final String OBJECT_NAME = "org.frost.repair:type=RepairMetrics";
+
+	public static final String TEMP_COPY = "tempCopy";
+	public static final String STORAGE_OPEN = "storageOpen";
+	public static final String ATTACHMENT_COPY = "attachmentCopy";
+	public static final String COMMIT = "commit";
+
+	public static final String MESSAGES = "messages";
+	public static final String DUPLICATES = "duplicates";
+	public static final String BYTES_WRITTEN = "bytesWritten";
+	public static final String CONTENT_KEYS = "contentKeys";
+	public static final String SHARED_CONTENTS = "sharedContents";
+	public static final String SHARED_PUBLIC_KEYS = "sharedPublicKeys";
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> lookups = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> lists = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> boards = new ConcurrentHashMap<>();
+
+	private ObjectName objectName;
+
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			objectName = new ObjectName(OBJECT_NAME);
+			server.registerMBean(this, objectName);
+		} catch (JMException e) {
+			log.warn("Can't publish metrics via JMX", e);
+			objectName = null;
+		}
+	}
+
+	public void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			log.debug("Can't unregister metrics", e);
+		}
+		objectName = null;
+	}
+
+	public void add(String counter, long value) {
+		LongAdder adder = counters.get(counter);
+		if (adder == null) {
+			adder = counters.computeIfAbsent(counter, key -> new LongAdder());
+		}
+		adder.add(value);
+	}
+
+	/**
+	 * Records the time since start, which is a value of System.nanoTime().
+	 */
+	public void time(String timer, long start) {
+		get(timers, timer).recordSince(start);
+	}
+
+	/**
+	 * Records a lookup in the old dbs-file that stands for several lookups, if
+	 * only some of them are timed.
+	 * 
+	 * @param part   Part of the message, see MessageContentReader
+	 * @param weight Number of lookups, e.g. 16 if every 16th lookup is timed
+	 */
+	public void lookup(String part, long start, long weight) {
+		get(lookups, part).recordSince(start, weight);
+	}
+
+	/**
+	 * Records the traversal of a whole list of a board.
+	 */
+	public void list(String listName, long start) {
+		get(lists, listName).recordSince(start);
+	}
+
+	/**
+	 * Latency of the messages of a board. Callers should keep the histogram for
+	 * the whole board instead of looking it up for every message.
+	 */
+	public LatencyHistogram getBoardLatency(String boardName) {
+		return get(boards, boardName);
+	}
+
+	private static LatencyHistogram get(Map<String, LatencyHistogram> histograms, String name) {
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+		}
+		return histogram;
+	}
+
+	/**
+	 * Messages read from the lists of all boards, including duplicates.
+	 */
+	public long getProcessedMessages() {
+		long result = 0;
+		for (LatencyHistogram histogram : boards.values()) {
+			result = result + histogram.getCount();
+		}
+		LongAdder duplicates = counters.get(DUPLICATES);
+		return duplicates != null ? result + duplicates.sum() : result;
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> result = new TreeMap<>();
+		counters.forEach((name, value) -> result.put(name, value.sum()));
+		return result;
+	}
+
+	/**
+	 * All timers, lookups and lists with a prefix for their kind.
+	 */
+	private Map<String, LatencyHistogram> getAllTimers() {
+		Map<String, LatencyHistogram> result = new TreeMap<>(timers);
+		lookups.forEach((part, histogram) -> result.put("lookup " + part, histogram));
+		lists.forEach((listName, histogram) -> result.put("list " + listName, histogram));
+		return result;
+	}
+
+	private static Map<String, Long> map(Map<String, LatencyHistogram> histograms,
+			ToLongFunction<LatencyHistogram> value) {
+		Map<String, Long> result = new TreeMap<>();
+		histograms.forEach((name, histogram) -> result.put(name, value.applyAsLong(histogram)));
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getTimerCounts() {
+		return map(getAllTimers(), LatencyHistogram::getCount);
+	}
+
+	@Override
+	public Map<String, Long> getTimerTotalMillis() {
+		return map(getAllTimers(), histogram -> TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos()));
+	}
+
+	@Override
+	public Map<String, Long> getTimerMaxMillis() {
+		return map(getAllTimers(), histogram -> TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()));
+	}
+
+	@Override
+	public Map<String, Long> getBoardMessageCounts() {
+		return map(boards, LatencyHistogram::getCount);
+	}
+
+	@Override
+	public Map<String, Long> getBoardMeanMicros() {
+		return map(boards, histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.getMeanNanos()));
+	}
+
+	@Override
+	public Map<String, Long> getBoardP99Micros() {
+		return map(boards, histogram -> TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(0.99)));
+	}
+
+	@Override
+	public String getJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"counters\": {");
+		String separator = "\n";
+		for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+			json.append(separator).append("    ").append(Json.quote(counter.getKey())).append(": ")
+					.append(counter.getValue());
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"timers\": {");
+		appendHistograms(json, getAllTimers());
+		json.append("\n  },\n  \"boards\": {");
+		appendHistograms(json, new TreeMap<>(boards));
+		json.append("\n  }\n}\n");
+		return json.toString();
+	}
+
+	private static void appendHistograms(StringBuilder json, Map<String, LatencyHistogram> histograms) {
+		String separator = "\n";
+		for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			json.append(separator).append("    ").append(Json.quote(entry.getKey())).append(": {");
+			json.append("\"count\": ").append(histogram.getCount());
+			json.append(", \"totalMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos()));
+			json.append(", \"meanMicros\": ").append(TimeUnit.NANOSECONDS.toMicros(histogram.getMeanNanos()));
+			json.append(", \"p50Micros\": ").append(micros(histogram, 0.5));
+			json.append(", \"p90Micros\": ").append(micros(histogram, 0.9));
+			json.append(", \"p99Micros\": ").append(micros(histogram, 0.99));
+			json.append(", \"maxMicros\": ").append(TimeUnit.NANOSECONDS.toMicros(histogram.getMaxNanos()));
+			json.append("}");
+			separator = ",\n";
+		}
+	}
+
+	private static long micros(LatencyHistogram histogram, double percentile) {
+		return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentileNanos(percentile));
+	}
+
+	public void save(Path filename) {
+		try {
+			Files.writeString(filename, getJson(), StandardCharsets.UTF_8);
+			log.info("Saved metrics {}", filename);
+		} catch (IOException e) {
+			log.warn("Can't save metrics {}", filename, e);
+		}
+	}
+}
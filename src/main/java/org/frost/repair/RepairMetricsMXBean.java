@@ -0,0 +1,41 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Map;
+
+/**
+ * Metrics of a running repair, e.g. for jconsole or VisualVM.
+ */
+public interface RepairMetricsMXBean {
+
+	Map<String, Long> getCounters();
+
+	Map<String, Long> getTimerCounts();
+
+	Map<String, Long> getTimerTotalMillis();
+
+	Map<String, Long> getTimerMaxMillis();
+
+	Map<String, Long> getBoardMessageCounts();
+
+	Map<String, Long> getBoardMeanMicros();
+
+	Map<String, Long> getBoardP99Micros();
+
+	String getJson();
+}
@@ -0,0 +1,358 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+/**
+ * Settings of a single repair run, parsed from the command line.
+ */
+public class RepairOptions {
+
+	private String frostPath;
+
+	private Integer threads = 1;
+
+	private Boolean readOnly = false;
+
+	private Boolean check = false;
+
+	private Integer sampleSize;
+
+	private String exportFile;
+
+	private Boolean scanContent = false;
+
+	private Boolean deduplicateKeys = false;
+
+	private Long memoryBudget;
+
+	private Boolean mergeJoin = false;
+
+	private Boolean preScan = false;
+
+	private Boolean deduplicateContent = false;
+
+	private Boolean internStrings = false;
+
+	private Boolean salvage = false;
+
+	private Boolean resume = false;
+
+	private Boolean incremental = false;
+	// Download window of Frost
+	private Integer lookbackDays = 5;
+
+	private Boolean rebuildMessages = false;
+
+	private Boolean repairArchive = false;
+
+	private Long commitBytes = 64L * 1024L * 1024L;
+	private Long commitObjects = 100000L;
+	private Long commitSeconds = 60L;
+
+	private Long progressSeconds = 60L;
+
+	public static RepairOptions parse(String[] args) {
+		RepairOptions options = new RepairOptions();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--threads")) {
+				options.threads = parsePositiveInt(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--memory")) {
+				options.memoryBudget = parsePositiveInt(arg, nextValue(args, ++i, arg)) * 1024L * 1024L;
+			} else if (arg.equals("--commit-mb")) {
+				options.commitBytes = parsePositiveInt(arg, nextValue(args, ++i, arg)) * 1024L * 1024L;
+			} else if (arg.equals("--commit-objects")) {
+				options.commitObjects = (long) parsePositiveInt(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--commit-seconds")) {
+				options.commitSeconds = (long) parsePositiveInt(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--progress-seconds")) {
+				options.progressSeconds = (long) parsePositiveInt(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--pre-scan")) {
+				options.preScan = true;
+			} else if (arg.equals("--salvage")) {
+				options.salvage = true;
+			} else if (arg.equals("--dedup-content")) {
+				options.deduplicateContent = true;
+			} else if (arg.equals("--intern-strings")) {
+				options.internStrings = true;
+			} else if (arg.equals("--merge-join")) {
+				options.mergeJoin = true;
+			} else if (arg.equals("--resume")) {
+				options.resume = true;
+			} else if (arg.equals("--incremental")) {
+				options.incremental = true;
+			} else if (arg.equals("--lookback-days")) {
+				options.lookbackDays = parsePositiveInt(arg, nextValue(args, ++i, arg));
+			} else if (arg.equals("--rebuild-messages")) {
+				options.rebuildMessages = true;
+			} else if (arg.equals("--archive")) {
+				options.repairArchive = true;
+			} else if (arg.equals("--read-only")) {
+				options.readOnly = true;
+			} else if (arg.equals("--check")) {
+				options.check = true;
+				options.readOnly = true;
+			} else if (arg.equals("--export")) {
+				options.exportFile = nextValue(args, ++i, arg);
+				options.readOnly = true;
+			} else if (arg.equals("--scan-content")) {
+				options.scanContent = true;
+			} else if (arg.equals("--dedup-keys")) {
+				options.deduplicateKeys = true;
+			} else if (arg.equals("--sample")) {
+				options.sampleSize = parsePositiveInt(arg, nextValue(args, ++i, arg));
+				options.check = true;
+				options.readOnly = true;
+			} else if (arg.startsWith("--")) {
+				throw new IllegalArgumentException(String.format("Unknown option \"%s\"!", arg));
+			} else if (options.frostPath == null) {
+				options.frostPath = arg;
+			} else {
+				throw new IllegalArgumentException(String.format("Unexpected parameter \"%s\"!", arg));
+			}
+		}
+		if (options.frostPath == null) {
+			throw new IllegalArgumentException("Parameter 1 \"path to Frost\" is missing!");
+		}
+		if (options.resume && (options.threads > 1 || options.mergeJoin)) {
+			throw new IllegalArgumentException(
+					"Option \"--resume\" can't be combined with \"--threads\" or \"--merge-join\"!");
+		}
+		if (options.incremental && (options.resume || options.mergeJoin)) {
+			throw new IllegalArgumentException(
+					"Option \"--incremental\" can't be combined with \"--resume\" or \"--merge-join\"!");
+		}
+		if (options.check && (options.resume || options.incremental || options.mergeJoin)) {
+			throw new IllegalArgumentException(
+					"Option \"--check\" or \"--sample\" can't be combined with \"--resume\", \"--incremental\" "
+							+ "or \"--merge-join\"!");
+		}
+		if (options.exportFile != null && (options.check || options.resume || options.incremental
+				|| options.mergeJoin)) {
+			throw new IllegalArgumentException("Option \"--export\" can't be combined with \"--check\", "
+					+ "\"--sample\", \"--resume\", \"--incremental\" or \"--merge-join\"!");
+		}
+		if (options.deduplicateContent && options.mergeJoin) {
+			throw new IllegalArgumentException(
+					"Option \"--dedup-content\" can't be combined with \"--merge-join\"!");
+		}
+		if (options.internStrings && options.mergeJoin) {
+			throw new IllegalArgumentException(
+					"Option \"--intern-strings\" can't be combined with \"--merge-join\"!");
+		}
+		if (options.scanContent && options.exportFile == null) {
+			throw new IllegalArgumentException("Option \"--scan-content\" requires \"--export\"!");
+		}
+		if (options.deduplicateKeys && options.exportFile == null) {
+			throw new IllegalArgumentException("Option \"--dedup-keys\" requires \"--export\"!");
+		}
+		return options;
+	}
+
+	private static String nextValue(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(String.format("Option \"%s\" requires a value!", option));
+		}
+		return args[index];
+	}
+
+	private static Integer parsePositiveInt(String option, String value) {
+		try {
+			Integer result = Integer.valueOf(value);
+			if (result < 1) {
+				throw new IllegalArgumentException(String.format("Option \"%s\" must be at least 1!", option));
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Option \"%s\" requires a number!", option), e);
+		}
+	}
+
+	public String getFrostPath() {
+		return frostPath;
+	}
+
+	/**
+	 * Number of boards that are read at the same time. 1 repairs all boards on the
+	 * calling thread.
+	 */
+	public Integer getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Opens the dbs-files of Frost directly instead of copying them to the
+	 * temporary folder first. They are never modified.
+	 */
+	public Boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Only reads all messages and counts their broken parts. Nothing is written,
+	 * not even temporary copies, so it implies read-only.
+	 */
+	public Boolean isCheck() {
+		return check;
+	}
+
+	/**
+	 * Number of random messages that are checked instead of all messages or null
+	 * to check all. Implies check.
+	 */
+	public Integer getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Writes the attachments of all messages to this NDJSON-file instead of
+	 * repairing the dbs-files or null to repair. Implies read-only.
+	 */
+	public String getExportFile() {
+		return exportFile;
+	}
+
+	/**
+	 * Also exports the Freenet keys found in the content of the messages.
+	 */
+	public Boolean isScanContent() {
+		return scanContent;
+	}
+
+	/**
+	 * Exports every key only once.
+	 */
+	public Boolean isDeduplicateKeys() {
+		return deduplicateKeys;
+	}
+
+	/**
+	 * Memory for the page pools of all dbs-files in bytes or null to use a share
+	 * of the max heap.
+	 */
+	public Long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Copies the message-contents index by index in key order instead of message
+	 * by message. Runs on a single thread.
+	 */
+	public Boolean isMergeJoin() {
+		return mergeJoin;
+	}
+
+	/**
+	 * Checks the values of the message-content indexes before the repair, so
+	 * broken values are skipped without an exception.
+	 */
+	public Boolean isPreScan() {
+		return preScan;
+	}
+
+	/**
+	 * Searches messagesContents.dbs for index pages that can't be reached anymore
+	 * and reads the values they still reference.
+	 */
+	public Boolean isSalvage() {
+		return salvage;
+	}
+
+	/**
+	 * Stores the same content and public key only once in the new dbs-file and
+	 * lets all its messages share it.
+	 * 
+	 * @see PerstStringDeduplicator
+	 */
+	public Boolean isDeduplicateContent() {
+		return deduplicateContent;
+	}
+
+	/**
+	 * Keeps only one instance of equal public keys and attachment strings in
+	 * memory while they are copied.
+	 */
+	public Boolean isInternStrings() {
+		return internStrings;
+	}
+
+	/**
+	 * Continues an aborted repair from its checkpoint instead of starting again.
+	 */
+	public Boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * Updates the existing new dbs-file with the messages received since the last
+	 * incremental repair.
+	 */
+	public Boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Days before the last message date that an incremental repair reads again,
+	 * because Frost also downloads older messages.
+	 */
+	public Integer getLookbackDays() {
+		return lookbackDays;
+	}
+
+	/**
+	 * Also rebuilds the message indexes of all boards in messages.dbs.
+	 */
+	public Boolean isRebuildMessages() {
+		return rebuildMessages;
+	}
+
+	/**
+	 * Also copies all readable messages of the message archive into a new
+	 * dbs-file.
+	 */
+	public Boolean isRepairArchive() {
+		return repairArchive;
+	}
+
+	/**
+	 * Commit the new dbs-file after this many bytes of modified content.
+	 */
+	public Long getCommitBytes() {
+		return commitBytes;
+	}
+
+	/**
+	 * Commit the new dbs-file after this many modified objects.
+	 */
+	public Long getCommitObjects() {
+		return commitObjects;
+	}
+
+	/**
+	 * Commit the new dbs-file at least every this many seconds.
+	 */
+	public Long getCommitSeconds() {
+		return commitSeconds;
+	}
+
+	/**
+	 * Interval of the progress reports in seconds.
+	 */
+	public Long getProgressSeconds() {
+		return progressSeconds;
+	}
+}
@@ -0,0 +1,191 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes one JSON line per message with broken parts. The lines are written in
+ * batches by a background thread, so a badly damaged dbs-file does not slow
+ * down the repair with logging.
+ */
+public class RepairReport implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(RepairReport.class);
+
+	private static final Integer QUEUE_SIZE = 10000;
+	private static final Integer BATCH_SIZE = 1000;
+
+	private static final Row END = new Row(null, null, 0, null);
+
+	private final Path filename;
+	private final BufferedWriter writer;
+	private final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+	private final Thread thread;
+
+	private volatile long rowCount;
+	private volatile IOException error;
+
+	private static class Row {
+		private final String boardName;
+		private final String listName;
+		private final int oid;
+		private final List<BrokenPart> brokenParts;
+
+		private Row(String boardName, String listName, int oid, List<BrokenPart> brokenParts) {
+			this.boardName = boardName;
+			this.listName = listName;
+			this.oid = oid;
+			this.brokenParts = brokenParts;
+		}
+	}
+
+	/**
+	 * @param append Keep the rows of an earlier run, e.g. if it is resumed
+	 */
+	public RepairReport(Path filename, Boolean append) throws IOException {
+		this.filename = filename;
+		if (append) {
+			writer = Files.newBufferedWriter(filename, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+					StandardOpenOption.APPEND);
+		} else {
+			writer = Files.newBufferedWriter(filename, StandardCharsets.UTF_8);
+		}
+		thread = new Thread(this::writeRows, "report");
+		// Does not keep a failed repair running
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public Path getFilename() {
+		return filename;
+	}
+
+	/**
+	 * @param boardName Board of the message or null if unknown
+	 * @param listName  List of the board or null if unknown
+	 */
+	public void add(String boardName, String listName, int oid, List<BrokenPart> brokenParts) {
+		try {
+			queue.put(new Row(boardName, listName, oid, brokenParts));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Number of rows written so far.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	private void writeRows() {
+		List<Row> batch = new ArrayList<>(BATCH_SIZE);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				for (Row row : batch) {
+					if (row == END) {
+						writer.flush();
+						return;
+					}
+					write(row);
+				}
+				batch.clear();
+				// Keep the file up to date while the repair has nothing to report
+				if (queue.isEmpty()) {
+					writer.flush();
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+			// Keep the queue empty, so the repair is not blocked
+			discardRows();
+		} catch (InterruptedException e) {
+			error = new InterruptedIOException("Report was interrupted");
+		}
+	}
+
+	private void write(Row row) throws IOException {
+		StringBuilder line = new StringBuilder(128);
+		line.append("{\"board\":").append(Json.quote(row.boardName));
+		line.append(",\"list\":").append(Json.quote(row.listName));
+		line.append(",\"oid\":").append(row.oid);
+		line.append(",\"broken\":[");
+		for (int i = 0; i < row.brokenParts.size(); i++) {
+			BrokenPart brokenPart = row.brokenParts.get(i);
+			if (i > 0) {
+				line.append(',');
+			}
+			line.append("{\"part\":").append(Json.quote(brokenPart.getPart()));
+			line.append(",\"error\":").append(Json.quote(brokenPart.getError()));
+			if (brokenPart.getErrorCode() != null) {
+				line.append(",\"code\":").append(brokenPart.getErrorCode());
+			}
+			line.append('}');
+		}
+		line.append("]}\n");
+		writer.write(line.toString());
+		rowCount = rowCount + 1;
+	}
+
+	private void discardRows() {
+		try {
+			while (queue.take() != END) {
+				// Discard
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the remaining rows and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			queue.put(END);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing the report");
+		} finally {
+			writer.close();
+		}
+		if (error != null) {
+			throw error;
+		}
+		log.info("Saved repair report {} with {} broken messages", filename, rowCount);
+	}
+}
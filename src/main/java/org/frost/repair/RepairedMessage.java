@@ -0,0 +1,135 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Collections;
+import java.util.List;
+
+import frost.storage.perst.PerstString;
+import frost.storage.perst.messages.PerstBoardAttachment;
+import frost.storage.perst.messages.PerstFileAttachment;
+
+/**
+ * Readable content of a single message, ready to be stored in the new
+ * dbs-file. Broken parts are already replaced or removed.
+ */
+public class RepairedMessage {
+
+	private final int oid;
+
+	private final PerstString content;
+	private final PerstString publicKey;
+	private final PerstString signature;
+
+	private final List<PerstBoardAttachment> boardAttachments;
+	private final List<PerstFileAttachment> fileAttachments;
+
+	private final List<BrokenPart> brokenParts;
+
+	private String boardName;
+	private Long dateAndTime;
+
+	private List<String> contentKeys = Collections.emptyList();
+
+	public RepairedMessage(int oid, PerstString content, PerstString publicKey, PerstString signature,
+			List<PerstBoardAttachment> boardAttachments, List<PerstFileAttachment> fileAttachments) {
+		this(oid, content, publicKey, signature, boardAttachments, fileAttachments, Collections.emptyList());
+	}
+
+	public RepairedMessage(int oid, PerstString content, PerstString publicKey, PerstString signature,
+			List<PerstBoardAttachment> boardAttachments, List<PerstFileAttachment> fileAttachments,
+			List<BrokenPart> brokenParts) {
+		this.oid = oid;
+		this.content = content;
+		this.publicKey = publicKey;
+		this.signature = signature;
+		this.boardAttachments = boardAttachments;
+		this.fileAttachments = fileAttachments;
+		this.brokenParts = brokenParts;
+	}
+
+	public int getOid() {
+		return oid;
+	}
+
+	/**
+	 * @return Content, null only if read for an export without content
+	 */
+	public PerstString getContent() {
+		return content;
+	}
+
+	public PerstString getPublicKey() {
+		return publicKey;
+	}
+
+	public PerstString getSignature() {
+		return signature;
+	}
+
+	public List<PerstBoardAttachment> getBoardAttachments() {
+		return boardAttachments;
+	}
+
+	public List<PerstFileAttachment> getFileAttachments() {
+		return fileAttachments;
+	}
+
+	/**
+	 * Parts that were replaced or removed, because they could not be read.
+	 */
+	public List<BrokenPart> getBrokenParts() {
+		return brokenParts;
+	}
+
+	public Boolean isBroken() {
+		return !brokenParts.isEmpty();
+	}
+
+	/**
+	 * Board and date of the message in messages.dbs, set by BoardReader.
+	 */
+	public void setOrigin(String boardName, Long dateAndTime) {
+		this.boardName = boardName;
+		this.dateAndTime = dateAndTime;
+	}
+
+	/**
+	 * Freenet keys found in the content, set by BoardReader.
+	 */
+	public void setContentKeys(List<String> contentKeys) {
+		this.contentKeys = contentKeys;
+	}
+
+	public List<String> getContentKeys() {
+		return contentKeys;
+	}
+
+	/**
+	 * @return Board of the message or null if unknown
+	 */
+	public String getBoardName() {
+		return boardName;
+	}
+
+	/**
+	 * @return Date of the message or null if unknown
+	 */
+	public Long getDateAndTime() {
+		return dateAndTime;
+	}
+}
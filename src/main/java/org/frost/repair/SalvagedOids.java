@@ -0,0 +1,97 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.IPersistent;
+import org.garret.perst.Storage;
+import org.garret.perst.StorageError;
+
+/**
+ * OIDs of values that were found by the raw salvage, but can't be reached via
+ * their index. Only read after the salvage, so several threads may share it.
+ */
+public class SalvagedOids {
+
+	private static class Part {
+		private final Class<?> valueClass;
+		private final int[] keys;
+		private final int[] values;
+
+		private Part(Class<?> valueClass, int[] keys, int[] values) {
+			this.valueClass = valueClass;
+			this.keys = keys;
+			this.values = values;
+		}
+	}
+
+	private final Storage storage;
+	private final Map<String, Part> parts = new HashMap<>();
+
+	public SalvagedOids(Storage storage) {
+		this.storage = storage;
+	}
+
+	/**
+	 * @param keys   Message OIDs in ascending order
+	 * @param values OIDs of the values for the keys
+	 */
+	public void add(String part, Class<?> valueClass, int[] keys, int[] values) {
+		parts.put(part, new Part(valueClass, keys, values));
+	}
+
+	public long size(String part) {
+		Part entries = parts.get(part);
+		return entries != null ? entries.keys.length : 0;
+	}
+
+	/**
+	 * Loads the salvaged value of a message.
+	 * 
+	 * @return Value or null if nothing was salvaged or the value is broken too
+	 */
+	public Object resolve(String part, int oid) {
+		Part entries = parts.get(part);
+		if (entries == null) {
+			return null;
+		}
+		int index = Arrays.binarySearch(entries.keys, oid);
+		if (index < 0) {
+			return null;
+		}
+		try {
+			Object value = storage.getObjectByOID(entries.values[index]);
+			if (!entries.valueClass.isInstance(value)) {
+				return null;
+			}
+			// Also load the fields, so a broken value is found here
+			if (value instanceof IPersistent) {
+				((IPersistent) value).load();
+			}
+			return value;
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				return null;
+			}
+			throw e;
+		}
+	}
+}
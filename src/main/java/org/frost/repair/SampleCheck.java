@@ -0,0 +1,202 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.garret.perst.AssertionFailed;
+import org.garret.perst.Index;
+import org.garret.perst.StorageError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import frost.storage.perst.messages.PerstFrostBoardObject;
+import frost.storage.perst.messages.PerstFrostMessageObject;
+
+/**
+ * Estimates how many messages are broken from a random sample. The sample is
+ * drawn uniformly from the valid and invalid messages of all boards, so every
+ * message has the same chance and the rates of the sample estimate the rates
+ * of the whole store.
+ * <p>
+ * Index.getAt(...) of Perst walks the index from its start, so the sampled
+ * positions are sorted and each index is walked once. This still reads the
+ * leaf pages of the message indexes up to the last sampled position, i.e.
+ * about one page per few hundred messages. It saves loading the other messages
+ * and all their lookups in messagesContents.dbs, which make up most of the
+ * time of a full check. Indexes without a sampled position are not walked.
+ */
+public class SampleCheck {
+
+	private static final Logger log = LoggerFactory.getLogger(SampleCheck.class);
+
+	// 95% confidence
+	private static final Double Z = 1.96;
+
+	private final MessageContentReader reader;
+	private final Integer sampleSize;
+	private final Random random = new Random();
+
+	private Integer unreadableCount = 0;
+
+	public SampleCheck(MessageContentReader reader, Integer sampleSize) {
+		this.reader = reader;
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * @return Counts of the sampled messages
+	 */
+	public BoardStatistics check(List<PerstFrostBoardObject> boards) {
+		long population = 0;
+		for (PerstFrostBoardObject board : boards) {
+			population = population + board.getMessageIndex().size() + board.getInvalidMessagesIndex().size();
+		}
+		long[] positions = drawPositions(population);
+		log.info("Sample {} of {} messages", positions.length, population);
+
+		BoardStatistics sample = new BoardStatistics(null);
+		long offset = 0;
+		Integer next = 0;
+		for (PerstFrostBoardObject board : boards) {
+			for (Index<PerstFrostMessageObject> index : Arrays.asList(board.getMessageIndex(),
+					board.getInvalidMessagesIndex())) {
+				next = sampleIndex(board.getBoardName(), index, offset, positions, next, sample);
+				offset = offset + index.size();
+			}
+		}
+
+		log.info("Sampled {}", sample.getCounts());
+		if (unreadableCount > 0) {
+			log.warn("{} sampled messages could not be read from messages.dbs", unreadableCount);
+		}
+		logEstimate("messages with broken parts", sample.getBrokenCount(), sample.getMessageCount(), population);
+		logEstimate("broken content", sample.getBrokenContentCount(), sample.getMessageCount(), population);
+		logEstimate("broken public keys", sample.getBrokenPublicKeyCount(), sample.getMessageCount(), population);
+		logEstimate("broken signatures", sample.getBrokenSignatureCount(), sample.getMessageCount(), population);
+		logEstimate("broken attachments", sample.getBrokenAttachmentCount(), sample.getMessageCount(), population);
+		return sample;
+	}
+
+	/**
+	 * Floyd's algorithm, draws distinct positions without a set of the whole
+	 * population.
+	 * 
+	 * @return Sorted positions
+	 */
+	private long[] drawPositions(long population) {
+		long count = Math.min(sampleSize, population);
+		Set<Long> drawn = new HashSet<>();
+		for (long j = population - count; j < population; j++) {
+			long position = (long) (random.nextDouble() * (j + 1));
+			if (!drawn.add(position)) {
+				drawn.add(j);
+			}
+		}
+		long[] positions = new long[drawn.size()];
+		Integer i = 0;
+		for (Long position : drawn) {
+			positions[i] = position;
+			i = i + 1;
+		}
+		Arrays.sort(positions);
+		return positions;
+	}
+
+	/**
+	 * Reads the messages of the index at the positions from offset to offset +
+	 * size.
+	 * 
+	 * @param next First position of this index
+	 * @return First position of the next index
+	 */
+	private Integer sampleIndex(String boardName, Index<PerstFrostMessageObject> index, long offset,
+			long[] positions, Integer next, BoardStatistics sample) {
+		long end = offset + index.size();
+		long current = offset;
+		if (next >= positions.length || positions[next] >= end) {
+			return next;
+		}
+		try {
+			// The entries load their message only on request
+			Iterator<Map.Entry<Object, PerstFrostMessageObject>> entryIt = index.entryIterator();
+			while (next < positions.length && positions[next] < end && entryIt.hasNext()) {
+				Map.Entry<Object, PerstFrostMessageObject> entry = entryIt.next();
+				if (current == positions[next]) {
+					probe(entry, sample);
+					next = next + 1;
+				}
+				current = current + 1;
+			}
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				log.warn("Message index of board {} is broken after {} messages", boardName, current - offset);
+			} else {
+				throw e;
+			}
+		}
+		// Positions behind a broken index are not sampled
+		while (next < positions.length && positions[next] < end) {
+			next = next + 1;
+		}
+		return next;
+	}
+
+	private void probe(Map.Entry<Object, PerstFrostMessageObject> entry, BoardStatistics sample) {
+		int oid;
+		try {
+			oid = entry.getValue().getOid();
+		} catch (ClassCastException | AssertionFailed | ArrayIndexOutOfBoundsException | StorageError e) {
+			if (MessageContentReader.isKnownError(e)) {
+				unreadableCount = unreadableCount + 1;
+				return;
+			}
+			throw e;
+		}
+		sample.addMessage();
+		RepairedMessage message = reader.read(oid);
+		if (message.isBroken()) {
+			sample.addBroken(message.getBrokenParts());
+		}
+	}
+
+	/**
+	 * Logs the rate of the sample with its Wilson score interval, which stays
+	 * within 0% and 100% even for small samples and rates near 0.
+	 */
+	private void logEstimate(String name, Integer count, Integer sampled, long population) {
+		if (sampled == 0) {
+			return;
+		}
+		double n = sampled;
+		double rate = count / n;
+		double z2 = Z * Z;
+		double denominator = 1 + z2 / n;
+		double center = (rate + z2 / (2 * n)) / denominator;
+		double margin = Z / denominator * Math.sqrt(rate * (1 - rate) / n + z2 / (4 * n * n));
+		double lower = Math.max(0, center - margin);
+		double upper = Math.min(1, center + margin);
+		log.info(String.format("%s: %.2f%% (95%% confidence %.2f%% - %.2f%%), about %d of %d messages", name,
+				rate * 100, lower * 100, upper * 100, Math.round(rate * population), population));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import org.garret.perst.Storage;
+
+/**
+ * Splits the memory available for Perst between the opened dbs-files. The
+ * page pool of a file is never larger than the file itself, so small files do
+ * not waste memory that a larger file could use.
+ */
+public class StorageSizing {
+
+	// The rest of the heap is left for the objects loaded by Perst and the repair
+	private static final Double HEAP_SHARE = 0.5;
+	private static final Double TARGET_SHARE = 0.2;
+
+	private static final Long MIN_PAGE_POOL_SIZE = (long) Storage.DEFAULT_PAGE_POOL_SIZE;
+
+	private static final Integer BYTES_PER_CACHED_OBJECT = 4096;
+	private static final Integer MIN_OBJECT_CACHE_SIZE = 1319; // Default of Perst
+	private static final Integer MAX_OBJECT_CACHE_SIZE = 1 << 20;
+
+	private final Long budget;
+	private final Long sourceSize;
+
+	/**
+	 * @param memoryBudget Memory for all page pools in bytes or null to use a
+	 *                     share of the max heap
+	 * @param sourceSizes  Sizes of all dbs-files that are read
+	 */
+	public StorageSizing(Long memoryBudget, long... sourceSizes) {
+		long heapBudget = (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE);
+		if (memoryBudget == null) {
+			budget = heapBudget;
+		} else {
+			budget = Math.min(memoryBudget, heapBudget);
+		}
+
+		long total = 0;
+		for (long size : sourceSizes) {
+			total = total + size;
+		}
+		sourceSize = total;
+	}
+
+	public Long getBudget() {
+		return budget;
+	}
+
+	public Long getSourcePagePoolSize(long fileSize) {
+		long sourceBudget = (long) (budget * (1 - TARGET_SHARE));
+		long share = sourceSize > 0 ? (long) (sourceBudget * ((double) fileSize / sourceSize)) : 0;
+		return limit(share, fileSize);
+	}
+
+	/**
+	 * The new dbs-file grows up to the size of the old content.
+	 */
+	public Long getTargetPagePoolSize(long expectedSize) {
+		return limit((long) (budget * TARGET_SHARE), expectedSize);
+	}
+
+	public Integer getObjectCacheSize(long pagePoolSize) {
+		long size = pagePoolSize / BYTES_PER_CACHED_OBJECT;
+		return (int) Math.max(MIN_OBJECT_CACHE_SIZE, Math.min(MAX_OBJECT_CACHE_SIZE, size));
+	}
+
+	private Long limit(long share, long fileSize) {
+		return Math.max(MIN_PAGE_POOL_SIZE, Math.min(share, fileSize));
+	}
+}
@@ -0,0 +1,102 @@
+/*
+  Copyright 2026 Spider-Admin@Z+d9Knmjd3hQeeZU6BOWPpAAxxs
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package org.frost.repair;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces equal strings by one instance, e.g. the public keys and file names
+ * that repeat in many messages, so the messages waiting to be written and the
+ * objects waiting for the next commit hold each of them only once. Unlike
+ * String.intern() the cache is bounded: the least recently used strings are
+ * dropped.
+ * <p>
+ * Threads may share an interner. The cache is split into segments by hash,
+ * each with its own lock, so the board workers rarely wait for each other.
+ */
+public class StringInterner {
+
+	private static final Integer SEGMENT_COUNT = 16;
+
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+
+	private static class Segment extends LinkedHashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Integer maxSize;
+
+		private Segment(Integer maxSize) {
+			// Access order, so the eldest entry is the least recently used
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	/**
+	 * @param maxSize Number of strings in the cache
+	 */
+	public StringInterner(Integer maxSize) {
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(Math.max(1, maxSize / SEGMENT_COUNT));
+		}
+	}
+
+	/**
+	 * @return Cached string equal to value or value itself, null if value is null
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		int hash = value.hashCode();
+		Segment segment = segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+		synchronized (segment) {
+			String cached = segment.putIfAbsent(value, value);
+			if (cached != null) {
+				hitCount.increment();
+				return cached;
+			}
+		}
+		missCount.increment();
+		return value;
+	}
+
+	/**
+	 * Number of strings that were replaced by a cached string.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Number of strings that were not in the cache.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+}